@@ -0,0 +1,878 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.archive;
+
+import com.shobute.arbigo.record.GameRecordReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A store for very many game records, kept in a directory of segment files
+ * and an index.
+ *
+ * Each game is compressed on its own and appended to the newest segment as
+ * an entry of a magic number, id, raw and compressed lengths, a CRC32 of
+ * the compressed bytes, the board's content hash, then the compressed
+ * record. A segment is sealed once it reaches its size limit and a new one
+ * is started.
+ *
+ * Compressing blocks of games together would roughly halve the space small
+ * records take, as similar games share much more with each other than with
+ * themselves. Entries are compressed alone instead, so that fetching a game
+ * inflates only that game. It also means an added game is on disk at once
+ * rather than waiting in an open block, a torn entry is the only loss in a
+ * crash, and compaction copies entries without recompressing them. Every
+ * addition and removal is also appended to the index file, which is read
+ * into memory on opening, so fetching a game is a single positional read.
+ * Entries missing from the index after a crash are recovered from the ends
+ * of the segments.
+ *
+ * Removed games stay in their segment until compaction copies the live
+ * games of sealed segments into new ones, rewrites the index and deletes
+ * the old segments. The rewritten index marks the old segments as retired,
+ * so if a crash leaves any of them behind they are deleted on opening
+ * rather than recovered. Compaction runs on a background thread, and readers
+ * are only held up while the index is swapped.
+ *
+ * @author Ben Lloyd
+ */
+public class GameArchive implements Closeable {
+
+    /**
+     * The size at which segments are sealed, unless another is given.
+     */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    /**
+     * Receives games while scanning the archive.
+     */
+    public interface Visitor {
+
+        /**
+         * Look at a game.
+         *
+         * @param id The game's id.
+         * @param record A reader positioned at the game's first event.
+         * @return True to carry on scanning, false to stop.
+         * @throws IOException To stop scanning with an error.
+         */
+        boolean visit(int id, GameRecordReader record) throws IOException;
+
+    }
+
+    static final int HASH_BYTES = 32;
+    static final int ENTRY_HEADER = 20 + HASH_BYTES;
+    static final int INDEX_HEADER = 8;
+    static final int INDEX_ENTRY = 24 + HASH_BYTES;
+
+    private static final int ENTRY_MAGIC = 0x41524245;
+    private static final int INDEX_MAGIC = 0x41524249;
+    private static final int VERSION = 2;
+    private static final int LIVE = 0;
+    private static final int REMOVED = 1;
+    private static final int RETIRED = 2;
+    private static final String INDEX = "index.dat";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService compactor;
+
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private final Map<Integer, Long> ends = new HashMap<>();
+    private FileChannel index;
+    private int active = -1;
+    private int nextSegment;
+
+    private int count;
+    private int[] segmentOf = new int[0];
+    private long[] offsetOf = new long[0];
+    private int[] lengthOf = new int[0];
+    private ByteBuffer[] boardOf = new ByteBuffer[0];
+    private final BitSet removed = new BitSet();
+    private final Map<ByteBuffer, IdList> boards = new HashMap<>();
+    private long deadBytes;
+    private Future<?> compaction;
+
+    /**
+     * Open an archive with the default segment size, creating it if needed.
+     *
+     * @param directory The archive's directory.
+     * @throws IOException If the archive cannot be read or created.
+     */
+    public GameArchive(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Open an archive, creating it if needed.
+     *
+     * @param directory The archive's directory.
+     * @param segmentBytes The size at which segments are sealed.
+     * @throws IOException If the archive cannot be read or created.
+     */
+    public GameArchive(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "segment-*.dat")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int number = Integer.parseInt(name.substring(8,
+                        name.length() - 4));
+                segments.put(number, FileChannel.open(file,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE));
+                nextSegment = Math.max(nextSegment, number + 1);
+            }
+        }
+        loadIndex();
+        for (Map.Entry<Integer, FileChannel> segment : segments.entrySet()) {
+            recover(segment.getKey(), segment.getValue());
+        }
+        // The newest segment may have been retired, so carry on with the
+        // newest one left.
+        if (segments.isEmpty()) {
+            active = newSegment();
+        } else {
+            active = segments.lastKey();
+        }
+
+        compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Archive compactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Add a game record to the archive.
+     *
+     * @param record The whole record, as written by a GameRecordWriter.
+     * @return The game's id.
+     * @throws IOException If the record is not valid or cannot be stored.
+     */
+    public int add(byte[] record) throws IOException {
+        byte[] hash;
+        try (GameRecordReader reader = reader(record)) {
+            hash = reader.getBoardHash();
+        }
+        byte[] compressed = compress(record);
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER
+                + compressed.length);
+
+        lock.writeLock().lock();
+        try {
+            int id = count;
+            entry.putInt(ENTRY_MAGIC).putInt(id).putInt(record.length)
+                    .putInt(compressed.length).putInt((int) crc.getValue())
+                    .put(hash).put(compressed);
+            ((Buffer) entry).flip();
+            long offset = end(active);
+            if (offset > 0 && offset + entry.limit() > segmentBytes) {
+                active = newSegment();
+                offset = 0;
+            }
+            write(segments.get(active), entry, offset);
+            put(id, LIVE, active, offset, entry.limit(), hash);
+            appendIndex(id);
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a game record file to the archive.
+     *
+     * @param record The record file.
+     * @return The game's id.
+     * @throws IOException If the record is not valid or cannot be stored.
+     */
+    public int add(Path record) throws IOException {
+        return add(Files.readAllBytes(record));
+    }
+
+    /**
+     * Get a game's record.
+     *
+     * @param id The game's id.
+     * @return The whole record, or null if there is no such game.
+     * @throws IOException If the game cannot be read.
+     */
+    public byte[] get(int id) throws IOException {
+        ByteBuffer entry;
+        lock.readLock().lock();
+        try {
+            if (!isLive(id)) {
+                return null;
+            }
+            entry = ByteBuffer.allocate(lengthOf[id]);
+            read(segments.get(segmentOf[id]), entry, offsetOf[id]);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(id, entry);
+    }
+
+    /**
+     * Open a game's record for reading.
+     *
+     * @param id The game's id.
+     * @return A reader positioned at the first event, or null if there is no
+     * such game.
+     * @throws IOException If the game cannot be read.
+     */
+    public GameRecordReader open(int id) throws IOException {
+        byte[] record = get(id);
+        return record == null ? null : reader(record);
+    }
+
+    /**
+     * Remove a game. Its space is reclaimed by compaction, which is started
+     * once a segment's worth of space is waiting.
+     *
+     * @param id The game's id.
+     * @return True if the game was removed, false if there was no such game.
+     * @throws IOException If the removal cannot be recorded.
+     */
+    public boolean remove(int id) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!isLive(id)) {
+                return false;
+            }
+            removed.set(id);
+            deadBytes += lengthOf[id];
+            appendIndex(id);
+            if (deadBytes >= segmentBytes
+                    && (compaction == null || compaction.isDone())) {
+                compaction = compact();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of games in the archive.
+     *
+     * @return The number of games which have not been removed.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (int id = 0; id < count; id++) {
+                if (isLive(id)) {
+                    size++;
+                }
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the games played on a board.
+     *
+     * @param boardHash The board's content hash.
+     * @return The ids of the games, in the order they were added.
+     */
+    public int[] games(byte[] boardHash) {
+        lock.readLock().lock();
+        try {
+            IdList list = boards.get(ByteBuffer.wrap(boardHash));
+            if (list == null) {
+                return new int[0];
+            }
+            int[] ids = new int[list.size];
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                if (isLive(list.ids[i])) {
+                    ids[size++] = list.ids[i];
+                }
+            }
+            return Arrays.copyOf(ids, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read every game played on a board, one at a time. Games are read in
+     * the order they were added, which is the order they lie in the
+     * segments, so the files are read from front to back.
+     *
+     * @param boardHash The board's content hash.
+     * @param visitor Receives each game.
+     * @return The number of games visited.
+     * @throws IOException If a game cannot be read, or the visitor throws.
+     */
+    public int scan(byte[] boardHash, Visitor visitor) throws IOException {
+        int visited = 0;
+        for (int id : games(boardHash)) {
+            try (GameRecordReader record = open(id)) {
+                if (record == null) {
+                    continue;
+                }
+                visited++;
+                if (!visitor.visit(id, record)) {
+                    break;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Start compacting sealed segments with removed or unindexed games in
+     * them, on the background thread.
+     *
+     * @return The compaction's result, which can be waited on.
+     */
+    public Future<?> compact() {
+        return compactor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                compactNow();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Add game record files to an archive from the command line.
+     *
+     * @param args The archive directory, then the record files.
+     * @throws IOException If the archive cannot be opened or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GameArchive archive-directory "
+                    + "record-file...");
+            System.exit(2);
+        }
+        try (GameArchive archive = new GameArchive(Paths.get(args[0]))) {
+            for (int i = 1; i < args.length; i++) {
+                try {
+                    System.out.println(archive.add(Paths.get(args[i])) + " "
+                            + args[i]);
+                } catch (IOException ex) {
+                    System.err.println(args[i] + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for any compaction, then write everything to disk and close the
+     * files.
+     *
+     * @throws IOException If a file cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            index.force(false);
+            index.close();
+            for (FileChannel segment : segments.values()) {
+                segment.force(false);
+                segment.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactNow() throws IOException {
+        // Pick the sealed segments holding fewer live bytes than their size,
+        // and note where their live games are.
+        Map<Integer, List<Integer>> live = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            Map<Integer, Long> used = new HashMap<>();
+            for (int id = 0; id < count; id++) {
+                if (segmentOf[id] >= 0 && segmentOf[id] != active) {
+                    if (!live.containsKey(segmentOf[id])) {
+                        live.put(segmentOf[id], new ArrayList<Integer>());
+                        used.put(segmentOf[id], 0L);
+                    }
+                    if (!removed.get(id)) {
+                        live.get(segmentOf[id]).add(id);
+                        used.put(segmentOf[id], used.get(segmentOf[id])
+                                + lengthOf[id]);
+                    }
+                }
+            }
+            for (int segment : segments.keySet()) {
+                if (segment != active && !live.containsKey(segment)) {
+                    live.put(segment, new ArrayList<Integer>());
+                    used.put(segment, 0L);
+                }
+            }
+            for (Integer segment : new ArrayList<>(live.keySet())) {
+                if (used.get(segment) >= end(segment)) {
+                    live.remove(segment);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+
+        // Sealed segments are never written to, and only this thread
+        // deletes them, so they can be copied without holding the lock.
+        Map<Integer, FileChannel> copies = new TreeMap<>();
+        Map<Integer, long[]> moved = new HashMap<>();
+        int target = -1;
+        long position = 0;
+        for (Map.Entry<Integer, List<Integer>> segment : live.entrySet()) {
+            for (int id : segment.getValue()) {
+                ByteBuffer entry;
+                lock.readLock().lock();
+                try {
+                    entry = ByteBuffer.allocate(lengthOf[id]);
+                    read(segments.get(segment.getKey()), entry, offsetOf[id]);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (target < 0 || position + entry.limit() > segmentBytes) {
+                    target = reserveSegment();
+                    copies.put(target, FileChannel.open(segmentPath(target),
+                            StandardOpenOption.CREATE_NEW,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE));
+                    position = 0;
+                }
+                ((Buffer) entry).flip();
+                write(copies.get(target), entry, position);
+                moved.put(id, new long[]{segment.getKey(), target, position});
+                position += entry.limit();
+            }
+        }
+        for (FileChannel copy : copies.values()) {
+            copy.force(false);
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Integer, FileChannel> copy : copies.entrySet()) {
+                segments.put(copy.getKey(), copy.getValue());
+                ends.put(copy.getKey(), copy.getValue().size());
+            }
+            for (int id = 0; id < count; id++) {
+                long[] move = moved.get(id);
+                if (move != null && segmentOf[id] == (int) move[0]) {
+                    segmentOf[id] = (int) move[1];
+                    offsetOf[id] = move[2];
+                } else if (segmentOf[id] >= 0
+                        && live.containsKey(segmentOf[id])) {
+                    // A removed game left behind in a compacted segment.
+                    deadBytes -= lengthOf[id];
+                    segmentOf[id] = -1;
+                }
+            }
+            rewriteIndex(live.keySet());
+            for (int segment : live.keySet()) {
+                segments.remove(segment).close();
+                ends.remove(segment);
+                Files.delete(segmentPath(segment));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Path path = directory.resolve(INDEX);
+        index = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY * 1024);
+        long size = index.size();
+        if (size < INDEX_HEADER) {
+            index.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+            header.putInt(INDEX_MAGIC).putInt(VERSION << 16);
+            ((Buffer) header).flip();
+            write(index, header, 0);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+        read(index, header, 0);
+        if (header.getInt(0) != INDEX_MAGIC
+                || header.getInt(4) >>> 16 > VERSION) {
+            throw new IOException("Not a game archive index: " + path);
+        }
+        long entries = (size - INDEX_HEADER) / INDEX_ENTRY;
+        List<Integer> retired = new ArrayList<>();
+        long end = INDEX_HEADER + entries * INDEX_ENTRY;
+        byte[] hash = new byte[HASH_BYTES];
+        for (long position = INDEX_HEADER; position < end;) {
+            ((Buffer) buffer).clear();
+            ((Buffer) buffer).limit((int) Math.min(buffer.capacity(),
+                    end - position));
+            read(index, buffer, position);
+            position += buffer.limit();
+            ((Buffer) buffer).flip();
+            while (buffer.hasRemaining()) {
+                int id = buffer.getInt();
+                int flags = buffer.getInt();
+                int segment = buffer.getInt();
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                buffer.get(hash);
+                if (flags == RETIRED) {
+                    retired.add(segment);
+                    nextSegment = Math.max(nextSegment, segment + 1);
+                } else if (segments.containsKey(segment)) {
+                    put(id, flags, segment, offset, length, hash);
+                }
+            }
+        }
+        // Drop an entry left half written by a crash.
+        index.truncate(end);
+
+        // Finish deleting the segments of a compaction cut short by a crash.
+        for (int segment : retired) {
+            FileChannel channel = segments.remove(segment);
+            if (channel != null) {
+                channel.close();
+                Files.delete(segmentPath(segment));
+            }
+        }
+    }
+
+    /*
+     * Index any whole entries past the end of the indexed part of a segment,
+     * and cut off anything after them.
+     */
+    private void recover(int segment, FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = end(segment);
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER);
+        byte[] hash = new byte[HASH_BYTES];
+        while (position + ENTRY_HEADER <= size) {
+            ((Buffer) header).clear();
+            read(channel, header, position);
+            ((Buffer) header).flip();
+            int magic = header.getInt();
+            int id = header.getInt();
+            int raw = header.getInt();
+            int compressed = header.getInt();
+            int checksum = header.getInt();
+            header.get(hash);
+            if (magic != ENTRY_MAGIC || id < 0 || raw <= 0 || compressed <= 0
+                    || position + ENTRY_HEADER + compressed > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(compressed);
+            read(channel, payload, position + ENTRY_HEADER);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            put(id, LIVE, segment, position, ENTRY_HEADER + compressed, hash);
+            appendIndex(id);
+            position += ENTRY_HEADER + compressed;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        ends.put(segment, position);
+    }
+
+    private void put(int id, int flags, int segment, long offset, int length,
+            byte[] hash) {
+        if (id >= segmentOf.length) {
+            int capacity = Math.max(id + 1, segmentOf.length * 2);
+            int old = segmentOf.length;
+            segmentOf = Arrays.copyOf(segmentOf, capacity);
+            Arrays.fill(segmentOf, old, capacity, -1);
+            offsetOf = Arrays.copyOf(offsetOf, capacity);
+            lengthOf = Arrays.copyOf(lengthOf, capacity);
+            boardOf = Arrays.copyOf(boardOf, capacity);
+        }
+        count = Math.max(count, id + 1);
+        if (boardOf[id] == null) {
+            ByteBuffer board = ByteBuffer.wrap(hash.clone());
+            IdList list = boards.get(board);
+            if (list == null) {
+                list = new IdList();
+                boards.put(board, list);
+            } else {
+                board = list.board;
+            }
+            list.board = board;
+            list.add(id);
+            boardOf[id] = board;
+        }
+        if (segmentOf[id] >= 0 && removed.get(id)) {
+            deadBytes -= lengthOf[id];
+        }
+        segmentOf[id] = segment;
+        offsetOf[id] = offset;
+        lengthOf[id] = length;
+        removed.set(id, flags == REMOVED);
+        if (flags == REMOVED) {
+            deadBytes += length;
+        }
+        ends.put(segment, Math.max(end(segment), offset + length));
+    }
+
+    private void appendIndex(int id) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        encodeIndex(entry, id);
+        ((Buffer) entry).flip();
+        write(index, entry, index.size());
+    }
+
+    private void encodeIndex(ByteBuffer buffer, int id) {
+        buffer.putInt(id).putInt(removed.get(id) ? REMOVED : LIVE)
+                .putInt(segmentOf[id]).putLong(offsetOf[id])
+                .putInt(lengthOf[id]).put(boardOf[id].array());
+    }
+
+    /*
+     * Write the whole index to a new file and move it over the old one, so
+     * a crash leaves one or the other. The retired segments are about to be
+     * deleted, and are marked so that a crash before then doesn't bring
+     * back the games removed from them.
+     */
+    private void rewriteIndex(Collection<Integer> retired) throws IOException {
+        Path path = directory.resolve(INDEX);
+        Path temporary = directory.resolve(INDEX + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY * 1024);
+            buffer.putInt(INDEX_MAGIC).putInt(VERSION << 16);
+            for (int segment : retired) {
+                buffer.putInt(-1).putInt(RETIRED).putInt(segment).putLong(0)
+                        .putInt(0).put(new byte[HASH_BYTES]);
+                if (buffer.remaining() < INDEX_ENTRY) {
+                    ((Buffer) buffer).flip();
+                    write(out, buffer, out.size());
+                    ((Buffer) buffer).clear();
+                }
+            }
+            for (int id = 0; id < count; id++) {
+                if (segmentOf[id] < 0) {
+                    continue;
+                }
+                if (buffer.remaining() < INDEX_ENTRY) {
+                    ((Buffer) buffer).flip();
+                    write(out, buffer, out.size());
+                    ((Buffer) buffer).clear();
+                }
+                encodeIndex(buffer, id);
+            }
+            ((Buffer) buffer).flip();
+            write(out, buffer, out.size());
+            out.force(false);
+        }
+        index.close();
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        index = FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private boolean isLive(int id) {
+        return id >= 0 && id < count && segmentOf[id] >= 0 && !removed.get(id);
+    }
+
+    private long end(int segment) {
+        Long end = ends.get(segment);
+        return end == null ? 0 : end;
+    }
+
+    private int reserveSegment() {
+        lock.writeLock().lock();
+        try {
+            return nextSegment++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int newSegment() throws IOException {
+        int segment = reserveSegment();
+        segments.put(segment, FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        ends.put(segment, 0L);
+        return segment;
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%06d.dat", segment));
+    }
+
+    private static GameRecordReader reader(byte[] record) throws IOException {
+        return new GameRecordReader(Channels.newChannel(
+                new ByteArrayInputStream(record)));
+    }
+
+    private static byte[] compress(byte[] record) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(record);
+            deflater.finish();
+            byte[] out = new byte[record.length / 2 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decode(int id, ByteBuffer entry) throws IOException {
+        ((Buffer) entry).flip();
+        int magic = entry.getInt();
+        int stored = entry.getInt();
+        int raw = entry.getInt();
+        int compressed = entry.getInt();
+        int checksum = entry.getInt();
+        if (compressed != entry.limit() - ENTRY_HEADER) {
+            throw new IOException("Corrupt archive entry for game " + id);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(entry.array(), ENTRY_HEADER, compressed);
+        if (magic != ENTRY_MAGIC || stored != id || raw < 0
+                || (int) crc.getValue() != checksum) {
+            throw new IOException("Corrupt archive entry for game " + id);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(entry.array(), ENTRY_HEADER, compressed);
+            byte[] record = new byte[raw];
+            int length = 0;
+            while (length < raw && !inflater.finished()) {
+                int inflated = inflater.inflate(record, length, raw - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw) {
+                throw new IOException("Corrupt archive entry for game " + id);
+            }
+            return record;
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt archive entry for game " + id, ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Archive file is truncated");
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /*
+     * A growable list of the ids of the games on one board.
+     */
+    private static final class IdList {
+
+        private ByteBuffer board;
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+    }
+
+}
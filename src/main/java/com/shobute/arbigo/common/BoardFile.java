@@ -0,0 +1,400 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes boards in a compact binary format. A file holds, as big
+ * endian ints:
+ *
+ * <pre>
+ * magic "ARBG", version (high 16 bits) and flags (low 16 bits),
+ * node count n, edge list length m, edge colour as ARGB,
+ * x[n], y[n], offsets[n + 1], neighbours[m],
+ * CRC32 of everything before it.
+ * </pre>
+ *
+ * Nodes are numbered as in {@link FrozenGraph}, and node i is adjacent to
+ * neighbours[offsets[i]] up to neighbours[offsets[i + 1] - 1]. Each edge is
+ * listed from both of its ends. Large boards can be used without reading
+ * them through {@link MappedBoard}. Boards saved by earlier versions with
+ * Java serialisation can still be read, and converted with {@link #main}.
+ *
+ * @author Ben Lloyd
+ */
+public final class BoardFile {
+
+    /**
+     * The file extension for boards in this format.
+     */
+    public static final String EXTENSION = ".arbigo";
+
+    /**
+     * The format version written, and the newest which can be read.
+     */
+    public static final int VERSION = 1;
+
+    static final int MAGIC = 0x41524247;
+    static final int HEADER_BYTES = 20;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private BoardFile() {
+    }
+
+    /**
+     * Write a board.
+     *
+     * @param graph The board to write.
+     * @param file The file to write it to, which is replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Graph graph, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(graph, channel);
+        }
+    }
+
+    /**
+     * Write a board to a channel.
+     *
+     * @param graph The board to write.
+     * @param channel The channel to write to, which is left open.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public static void write(Graph graph, WritableByteChannel channel)
+            throws IOException {
+        write(graph.freeze(), graph.getColour(), channel);
+    }
+
+    /**
+     * Write a snapshot of a board to a channel. Snapshots do not change, so
+     * this can run on any thread while the board is still being edited.
+     *
+     * @param frozen The snapshot to write.
+     * @param colour The colour the board is drawn in.
+     * @param channel The channel to write to, which is left open.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public static void write(FrozenGraph frozen, Color colour,
+            WritableByteChannel channel) throws IOException {
+        int n = frozen.size();
+        int[] x = new int[n];
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = frozen.getX(i);
+            y[i] = frozen.getY(i);
+        }
+        int[] offsets = frozen.getOffsets();
+        int[] neighbours = frozen.getNeighbours();
+
+        Writer out = new Writer(channel);
+        out.writeInts(new int[]{MAGIC, VERSION << 16, n, offsets[n],
+            colour.getRGB()}, 5);
+        out.writeInts(x, n);
+        out.writeInts(y, n);
+        out.writeInts(offsets, n + 1);
+        out.writeInts(neighbours, offsets[n]);
+        out.finish();
+    }
+
+    /**
+     * Read a board in either this format or the older serialised one.
+     *
+     * @param file The file to read.
+     * @return A new graph.
+     * @throws IOException If the file cannot be read or is not a board.
+     */
+    public static Graph read(Path file) throws IOException {
+        if (isLegacy(file)) {
+            return readLegacy(file);
+        }
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Read a board in this format from a channel.
+     *
+     * @param channel The channel to read from, which is left open.
+     * @return A new graph.
+     * @throws IOException If the channel cannot be read or does not hold a
+     * valid board.
+     */
+    public static Graph read(ReadableByteChannel channel) throws IOException {
+        Reader in = new Reader(channel);
+        int[] header = new int[5];
+        in.readInts(header, 5);
+        if (header[0] != MAGIC) {
+            throw new IOException("Not a board file");
+        }
+        if (header[1] >>> 16 > VERSION) {
+            throw new IOException("Board file version " + (header[1] >>> 16)
+                    + " is newer than this program");
+        }
+        int n = header[2];
+        int m = header[3];
+        if (n < 0 || m < 0) {
+            throw new IOException("Corrupt board file");
+        }
+        int[] x = new int[n];
+        int[] y = new int[n];
+        int[] offsets = new int[n + 1];
+        int[] neighbours = new int[m];
+        in.readInts(x, n);
+        in.readInts(y, n);
+        in.readInts(offsets, n + 1);
+        in.readInts(neighbours, m);
+        in.finish();
+        IntBuffer offsetBuffer = IntBuffer.wrap(offsets);
+        IntBuffer neighbourBuffer = IntBuffer.wrap(neighbours);
+        check(offsetBuffer, neighbourBuffer);
+        return build(IntBuffer.wrap(x), IntBuffer.wrap(y), offsetBuffer,
+                neighbourBuffer, new Color(header[4], true));
+    }
+
+    /*
+     * Check that the rows are in order and every neighbour id is a node.
+     */
+    static void check(IntBuffer offsets, IntBuffer neighbours)
+            throws IOException {
+        int n = offsets.limit() - 1;
+        int m = neighbours.limit();
+        if (offsets.get(0) != 0 || offsets.get(n) != m) {
+            throw new IOException("Corrupt board file");
+        }
+        for (int i = 0; i < n; i++) {
+            if (offsets.get(i + 1) < offsets.get(i)) {
+                throw new IOException("Corrupt board file");
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            int id = neighbours.get(j);
+            if (id < 0 || id >= n) {
+                throw new IOException("Corrupt board file");
+            }
+        }
+    }
+
+    static Graph build(IntBuffer x, IntBuffer y, IntBuffer offsets,
+            IntBuffer neighbours, Color colour) {
+        int n = x.limit();
+        Node[] nodes = new Node[n];
+        Point point = new Point();
+        for (int i = 0; i < n; i++) {
+            point.setLocation(x.get(i), y.get(i));
+            nodes[i] = new Node(point);
+        }
+        Graph graph = new Graph();
+        graph.setColour(colour);
+        for (int i = 0; i < n; i++) {
+            for (int j = offsets.get(i); j < offsets.get(i + 1); j++) {
+                nodes[i].addAdjacentNode(nodes[neighbours.get(j)]);
+            }
+            graph.addNode(nodes[i]);
+        }
+        return graph;
+    }
+
+    /**
+     * Check whether a file is a board saved with Java serialisation.
+     *
+     * @param file The file to check.
+     * @return True if it starts with the serialisation stream magic.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isLegacy(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            return magic.position() == 2 && magic.getShort(0) == (short) 0xACED;
+        }
+    }
+
+    /**
+     * Read a board saved with Java serialisation.
+     *
+     * @param file The file to read.
+     * @return A new graph.
+     * @throws IOException If the file cannot be read or is not a board.
+     */
+    public static Graph readLegacy(Path file) throws IOException {
+        Graph legacy;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            legacy = (Graph) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Not a board file", ex);
+        }
+        /*
+         * Deserialising fills each node's adjacency set before every node in
+         * it has its hash code, so the sets can lose or misplace nodes.
+         * Copying into fresh nodes takes each edge from whichever end still
+         * has it.
+         */
+        return legacy.copy();
+    }
+
+    /**
+     * Convert boards saved with Java serialisation to this format. Each is
+     * written next to the original, with its extension replaced.
+     *
+     * @param args The files to convert.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BoardFile legacy-board...");
+            System.exit(2);
+        }
+        for (String arg : args) {
+            Path legacy = Paths.get(arg);
+            String name = legacy.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            if (dot > 0) {
+                name = name.substring(0, dot);
+            }
+            Path converted = legacy.resolveSibling(name + EXTENSION);
+            write(read(legacy), converted);
+            System.out.println(legacy + " -> " + converted);
+        }
+    }
+
+    /*
+     * Feeds ints through a fixed buffer to a channel, keeping a checksum.
+     */
+    private static final class Writer {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeInts(int[] values, int count) throws IOException {
+            int done = 0;
+            while (done < count) {
+                int batch = Math.min(count - done, buffer.remaining() / 4);
+                if (batch == 0) {
+                    flush();
+                    continue;
+                }
+                buffer.asIntBuffer().put(values, done, batch);
+                ((Buffer) buffer).position(buffer.position() + 4 * batch);
+                done += batch;
+            }
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            ((Buffer) buffer).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            ((Buffer) buffer).clear();
+        }
+
+        private void flush() throws IOException {
+            ((Buffer) buffer).flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            ((Buffer) buffer).clear();
+        }
+
+    }
+
+    /*
+     * Pulls ints through a fixed buffer from a channel, checking the
+     * checksum at the end.
+     */
+    private static final class Reader {
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void readInts(int[] values, int count) throws IOException {
+            int done = 0;
+            while (done < count) {
+                int batch = Math.min(count - done, BUFFER_BYTES / 4);
+                fill(4 * batch);
+                crc.update(buffer.array(), 0, 4 * batch);
+                buffer.asIntBuffer().get(values, done, batch);
+                done += batch;
+            }
+        }
+
+        void finish() throws IOException {
+            fill(4);
+            if (buffer.getInt(0) != (int) crc.getValue()) {
+                throw new IOException("Board file checksum does not match");
+            }
+        }
+
+        private void fill(int bytes) throws IOException {
+            ((Buffer) buffer).clear();
+            ((Buffer) buffer).limit(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Board file is truncated");
+                }
+            }
+            ((Buffer) buffer).flip();
+        }
+
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Picks how to read or write a board from its file name, and converts
+ * boards between formats from the command line.
+ *
+ * @author Ben Lloyd
+ */
+public final class BoardFormats {
+
+    private BoardFormats() {
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+
+    /**
+     * Read a board in any format this program knows. Edge lists may also be
+     * named .txt; anything else is read as a board file.
+     *
+     * @param file The file to read.
+     * @return A new graph.
+     * @throws IOException If the file cannot be read or is not a board.
+     */
+    public static Graph read(Path file) throws IOException {
+        switch (extension(file)) {
+            case EdgeListFile.EXTENSION:
+            case ".txt":
+                return EdgeListFile.read(file);
+            case GraphMLFile.EXTENSION:
+                return GraphMLFile.read(file);
+            default:
+                return BoardFile.read(file);
+        }
+    }
+
+    /**
+     * Write a board in the format its file name asks for, or as a board file
+     * otherwise.
+     *
+     * @param graph The board to write.
+     * @param file The file to write it to, which is replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Graph graph, Path file) throws IOException {
+        switch (extension(file)) {
+            case EdgeListFile.EXTENSION:
+            case ".txt":
+                EdgeListFile.write(graph, file);
+                break;
+            case GraphMLFile.EXTENSION:
+                GraphMLFile.write(graph, file);
+                break;
+            default:
+                BoardFile.write(graph, file);
+                break;
+        }
+    }
+
+    /**
+     * Write a snapshot of a board in the format a file name asks for, or as
+     * a board file otherwise.
+     *
+     * @param frozen The snapshot to write.
+     * @param colour The colour the board is drawn in.
+     * @param file The name of the file being written, which picks the format.
+     * @param channel The channel to write to, which is left open.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public static void write(FrozenGraph frozen, Color colour, Path file,
+            WritableByteChannel channel) throws IOException {
+        switch (extension(file)) {
+            case EdgeListFile.EXTENSION:
+            case ".txt":
+                EdgeListFile.write(frozen, colour, channel);
+                break;
+            case GraphMLFile.EXTENSION:
+                GraphMLFile.write(frozen, colour, channel);
+                break;
+            default:
+                BoardFile.write(frozen, colour, channel);
+                break;
+        }
+    }
+
+    /**
+     * Convert a board from one format to another, without a display.
+     *
+     * @param args The file to read and the file to write.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BoardFormats input output");
+            System.err.println("Formats: " + BoardFile.EXTENSION + ", "
+                    + EdgeListFile.EXTENSION + " (or .txt), "
+                    + GraphMLFile.EXTENSION);
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        long start = System.nanoTime();
+        Graph graph = read(input);
+        long read = System.nanoTime();
+        write(graph, output);
+        long written = System.nanoTime();
+        FrozenGraph frozen = graph.freeze();
+        System.out.printf("%s -> %s: %d nodes, %d edges, read in %d ms,"
+                + " written in %d ms%n", input, output, frozen.size(),
+                frozen.getEdgeCount(), (read - start) / 1000000,
+                (written - read) / 1000000);
+    }
+
+}
@@ -55,6 +55,21 @@ public class Colour {
         return colours[id++];
     }
 
+    /**
+     * Gets the position of a colour name within `colours`.
+     *
+     * @param colour The name of the colour.
+     * @return The index of the colour, or -1 if it is not a valid colour.
+     */
+    public static int indexOf(String colour) {
+        for (int i = 0; i < colours.length; i++) {
+            if (colours[i].equalsIgnoreCase(colour)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Converts the name of a colour into a Color object.
      *
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes boards as plain text, for boards made by scripts.
+ * <p>
+ * Each line holds one record, with fields separated by spaces, tabs or
+ * commas:
+ * <pre>
+ * # A comment
+ * c ff000000    the colour, as hexadecimal ARGB
+ * v 100 250     a node at (100, 250); nodes are numbered from 0
+ * e 0 1         an edge between the first two nodes
+ * </pre>
+ * Coordinates may have fractions, which are rounded. Edges may come before
+ * the nodes they join.
+ *
+ * @author Ben Lloyd
+ */
+public final class EdgeListFile {
+
+    /**
+     * The file name extension for edge lists.
+     */
+    public static final String EXTENSION = ".edges";
+
+    private EdgeListFile() {
+    }
+
+    /**
+     * Read an edge list.
+     *
+     * @param file The file to read.
+     * @return A new graph.
+     * @throws IOException If the file cannot be read or is not an edge list.
+     */
+    public static Graph read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Read an edge list from a channel.
+     *
+     * @param channel The channel to read from, which is left open.
+     * @return A new graph.
+     * @throws IOException If the channel cannot be read or is not an edge
+     * list.
+     */
+    public static Graph read(ReadableByteChannel channel) throws IOException {
+        TextScanner in = new TextScanner(channel);
+        GraphBuilder builder = new GraphBuilder();
+        while (in.nextLine()) {
+            switch (in.nextWord()) {
+                case 'v':
+                    int x = in.nextInt();
+                    builder.addNode(x, in.nextInt());
+                    break;
+                case 'e':
+                    int a = in.nextInt();
+                    builder.addEdge(a, in.nextInt());
+                    break;
+                case 'c':
+                    builder.setColour(new Color(in.nextHex(), true));
+                    break;
+                default:
+                    throw in.error("expected v, e or c");
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Write a board as an edge list.
+     *
+     * @param graph The board to write.
+     * @param file The file to write it to, which is replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Graph graph, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(graph.freeze(), graph.getColour(), channel);
+        }
+    }
+
+    /**
+     * Write a snapshot of a board as an edge list. Each edge is written once.
+     *
+     * @param frozen The snapshot to write.
+     * @param colour The colour the board is drawn in.
+     * @param channel The channel to write to, which is left open.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public static void write(FrozenGraph frozen, Color colour,
+            WritableByteChannel channel) throws IOException {
+        TextWriter out = new TextWriter(channel);
+        out.write("# ArbiGo board: ").writeInt(frozen.size())
+                .write(" nodes\n");
+        out.write("c ").writeHex(colour.getRGB()).write('\n');
+        for (int i = 0; i < frozen.size(); i++) {
+            out.write("v ").writeInt(frozen.getX(i)).write(' ')
+                    .writeInt(frozen.getY(i)).write('\n');
+        }
+        int[] offsets = frozen.getOffsets();
+        int[] neighbours = frozen.getNeighbours();
+        for (int i = 0; i < frozen.size(); i++) {
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                if (neighbours[j] > i) {
+                    out.write("e ").writeInt(i).write(' ')
+                            .writeInt(neighbours[j]).write('\n');
+                }
+            }
+        }
+        out.finish();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The edges of a graph as a few prebuilt paths, each drawn with a single call.
+ * Edges are grouped into square tiles by where they start, so only the tiles
+ * whose bounds meet a view need drawing, and an edge listed by both of its
+ * nodes is only included once. When the whole graph is in view the tiles are
+ * drawn as one merged path, built the first time it is needed.
+ *
+ * @author Ben Lloyd
+ */
+class EdgeMesh {
+
+    // Tiles are 2^SHIFT graph units square.
+    private static final int SHIFT = 10;
+
+    private final List<Path2D> paths = new ArrayList<>();
+    private final List<Rectangle2D> bounds = new ArrayList<>();
+    private final Rectangle2D extent = new Rectangle2D.Double();
+    private Path2D whole;
+    private int edgeCount;
+
+    EdgeMesh(Collection<Node> nodes) {
+        Map<Long, Path2D> tiles = new HashMap<>();
+        Set<Node> done = Collections.newSetFromMap(
+                new IdentityHashMap<Node, Boolean>());
+        for (Node node : nodes) {
+            for (Node adjNode : node.getAdjacentNodes()) {
+                if (done.contains(adjNode)
+                        && adjNode.getAdjacentNodes().contains(node)) {
+                    continue;
+                }
+                long key = ((long) (node.x >> SHIFT) << 32)
+                        | ((node.y >> SHIFT) & 0xFFFFFFFFL);
+                Path2D path = tiles.get(key);
+                if (path == null) {
+                    path = new Path2D.Float();
+                    tiles.put(key, path);
+                }
+                path.moveTo(node.x, node.y);
+                path.lineTo(adjNode.x, adjNode.y);
+                edgeCount++;
+            }
+            done.add(node);
+        }
+        for (Path2D path : tiles.values()) {
+            Rectangle2D box = path.getBounds2D();
+            // Pad so the bounds of a straight horizontal or vertical run
+            // still have an area to intersect with.
+            box.setRect(box.getX() - 1, box.getY() - 1, box.getWidth() + 2,
+                    box.getHeight() + 2);
+            if (paths.isEmpty()) {
+                extent.setRect(box);
+            } else {
+                extent.add(box);
+            }
+            paths.add(path);
+            bounds.add(box);
+        }
+    }
+
+    /**
+     * Get the number of edges in the mesh.
+     *
+     * @return Each edge counted once, whichever way round it was listed.
+     */
+    int getEdgeCount() {
+        return edgeCount;
+    }
+
+    void paint(Graphics2D g2d, Rectangle2D view) {
+        if (paths.size() > 1 && (view == null || view.contains(extent))) {
+            if (whole == null) {
+                whole = new Path2D.Float();
+                for (Path2D path : paths) {
+                    whole.append(path, false);
+                }
+            }
+            g2d.draw(whole);
+            return;
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            if (view == null || bounds.get(i).intersects(view)) {
+                g2d.draw(paths.get(i));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Point;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a graph's nodes and edges in compressed sparse row
+ * form. Nodes get dense ids ordered by position, and the neighbours of node
+ * `id` are `neighbours[offsets[id]]` to `neighbours[offsets[id + 1] - 1]`.
+ * Edges are always undirected in a frozen graph.
+ *
+ * A frozen graph never changes after construction, so any number of games
+ * may share one instance. One made from a {@link MappedBoard} reads its
+ * coordinates from the mapped file and only creates nodes as they are asked
+ * for.
+ *
+ * @author Ben Lloyd
+ */
+public final class FrozenGraph {
+
+    private final Node[] nodes;
+    private final Map<Node, Integer> ids;
+    private final IntBuffer xs;
+    private final IntBuffer ys;
+    private final boolean lazy;
+    private byte[] contentHash;
+    private final int[] offsets;
+    private final int[] neighbours;
+
+    FrozenGraph(Collection<Node> graphNodes) {
+        int n = graphNodes.size();
+        nodes = graphNodes.toArray(new Node[n]);
+        Arrays.sort(nodes, new Comparator<Node>() {
+            @Override
+            public int compare(Node n1, Node n2) {
+                if (n1.y != n2.y) {
+                    return Integer.compare(n1.y, n2.y);
+                }
+                if (n1.x != n2.x) {
+                    return Integer.compare(n1.x, n2.x);
+                }
+                return Integer.compare(n1.hashCode(), n2.hashCode());
+            }
+        });
+
+        ids = new HashMap<>(n * 2);
+        int[] x = new int[n];
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids.put(nodes[i], i);
+            x[i] = nodes[i].x;
+            y[i] = nodes[i].y;
+        }
+        xs = IntBuffer.wrap(x);
+        ys = IntBuffer.wrap(y);
+        lazy = false;
+
+        // Collect each edge in both directions, ignoring nodes that are not
+        // part of the graph.
+        int[] degrees = new int[n];
+        int edges = 0;
+        for (int i = 0; i < n; i++) {
+            for (Node adj : nodes[i].getAdjacentNodes()) {
+                Integer j = ids.get(adj);
+                if (j != null && j != i) {
+                    degrees[i]++;
+                    degrees[j]++;
+                    edges += 2;
+                }
+            }
+        }
+
+        int[] starts = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            starts[i + 1] = starts[i] + degrees[i];
+        }
+        int[] all = new int[edges];
+        int[] fill = Arrays.copyOf(starts, n);
+        for (int i = 0; i < n; i++) {
+            for (Node adj : nodes[i].getAdjacentNodes()) {
+                Integer j = ids.get(adj);
+                if (j != null && j != i) {
+                    all[fill[i]++] = j;
+                    all[fill[j]++] = i;
+                }
+            }
+        }
+
+        // Sort each row and drop the duplicates left by edges that were
+        // already stored in both directions.
+        offsets = new int[n + 1];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(all, starts[i], starts[i + 1]);
+            offsets[i] = size;
+            for (int k = starts[i]; k < starts[i + 1]; k++) {
+                if (k == starts[i] || all[k] != all[k - 1]) {
+                    all[size++] = all[k];
+                }
+            }
+        }
+        offsets[n] = size;
+        neighbours = Arrays.copyOf(all, size);
+    }
+
+    FrozenGraph(IntBuffer xs, IntBuffer ys, int[] offsets, int[] neighbours) {
+        this.xs = xs;
+        this.ys = ys;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        nodes = new Node[xs.limit()];
+        ids = new HashMap<>();
+        lazy = true;
+    }
+
+    /**
+     * Get the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Get the id of a node.
+     *
+     * @param node The node to look up.
+     * @return The node's id, or -1 if the node was not in the graph.
+     */
+    public int getId(Node node) {
+        if (lazy) {
+            synchronized (this) {
+                return lookUp(node);
+            }
+        }
+        return lookUp(node);
+    }
+
+    private int lookUp(Node node) {
+        Integer id = node == null ? null : ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the node with a particular id.
+     *
+     * @param id The node's id.
+     * @return The node.
+     */
+    public Node getNode(int id) {
+        return lazy ? createNode(id) : nodes[id];
+    }
+
+    private synchronized Node createNode(int id) {
+        if (nodes[id] == null) {
+            nodes[id] = new Node(new Point(xs.get(id), ys.get(id)));
+            ids.put(nodes[id], id);
+        }
+        return nodes[id];
+    }
+
+    /**
+     * Get the x coordinate a node had when the graph was frozen.
+     *
+     * @param id The node's id.
+     * @return The x coordinate.
+     */
+    public int getX(int id) {
+        return xs.get(id);
+    }
+
+    /**
+     * Get the y coordinate a node had when the graph was frozen.
+     *
+     * @param id The node's id.
+     * @return The y coordinate.
+     */
+    public int getY(int id) {
+        return ys.get(id);
+    }
+
+    /**
+     * Get the number of nodes adjacent to a node.
+     *
+     * @param id The node's id.
+     * @return The node's degree.
+     */
+    public int getDegree(int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Get the largest degree of any node.
+     *
+     * @return The maximum degree, or 0 for an empty graph.
+     */
+    public int getMaxDegree() {
+        int max = 0;
+        for (int id = 0; id < nodes.length; id++) {
+            max = Math.max(max, getDegree(id));
+        }
+        return max;
+    }
+
+    /**
+     * Get the number of undirected edges.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return neighbours.length / 2;
+    }
+
+    /**
+     * Get a SHA-256 digest of the node coordinates and edges, which identifies
+     * the board whatever file or graph it came from.
+     *
+     * @return A new 32 byte array.
+     */
+    public synchronized byte[] getContentHash() {
+        if (contentHash == null) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 12);
+            chunk.putInt(size()).putInt(neighbours.length);
+            for (IntBuffer ints : new IntBuffer[]{xs, ys,
+                IntBuffer.wrap(offsets), IntBuffer.wrap(neighbours)}) {
+                for (int i = 0; i < ints.limit(); i++) {
+                    if (!chunk.hasRemaining()) {
+                        digest.update(chunk.array(), 0, chunk.position());
+                        ((Buffer) chunk).clear();
+                    }
+                    chunk.putInt(ints.get(i));
+                }
+            }
+            digest.update(chunk.array(), 0, chunk.position());
+            contentHash = digest.digest();
+        }
+        return contentHash.clone();
+    }
+
+    /**
+     * Get the row offsets into getNeighbours(). The array is shared and must
+     * not be modified.
+     *
+     * @return An array of size() + 1 offsets.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Get the neighbour ids of every node, row by row. The array is shared
+     * and must not be modified.
+     *
+     * @return The neighbour ids.
+     */
+    public int[] getNeighbours() {
+        return neighbours;
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Cached bounds and closest pair distance of a set of nodes. The graph
+ * reports every node it adds, removes or moves, and the cache is either
+ * updated in place or marked stale and recomputed on the next request.
+ *
+ * @author Ben Lloyd
+ */
+class Geometry {
+
+    private final Collection<Node> nodes;
+
+    private boolean boundsValid;
+    private int xmin, ymin, xmax, ymax;
+
+    private boolean pairValid;
+    private double shortest;
+    private Node pairA, pairB;
+
+    Geometry(Collection<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Get the smallest rectangle containing every node.
+     *
+     * @return A new rectangle, or null if there are no nodes.
+     */
+    Rectangle getBounds() {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        if (!boundsValid) {
+            xmin = ymin = Integer.MAX_VALUE;
+            xmax = ymax = Integer.MIN_VALUE;
+            for (Node node : nodes) {
+                extend(node);
+            }
+            boundsValid = true;
+        }
+        return new Rectangle(xmin, ymin, xmax - xmin, ymax - ymin);
+    }
+
+    /**
+     * Get the distance between the two closest nodes.
+     *
+     * @return The distance, or Integer.MAX_VALUE if there are fewer than two
+     * nodes.
+     */
+    double getShortestDistance() {
+        if (!pairValid) {
+            computeClosestPair();
+            pairValid = true;
+        }
+        return shortest;
+    }
+
+    /**
+     * Record a node joining the set. Must be called before the node is put in
+     * the index, so that it does not find itself.
+     *
+     * @param node The node which was added.
+     * @param index The index of the other nodes.
+     */
+    void added(Node node, SpatialIndex index) {
+        if (boundsValid) {
+            extend(node);
+        }
+        if (pairValid && shortest < Integer.MAX_VALUE
+                && index.isLocal((int) Math.ceil(shortest))) {
+            Node nearest = index.nearest(node, (int) Math.ceil(shortest));
+            if (nearest != null && nearest.distance(node) < shortest) {
+                shortest = nearest.distance(node);
+                pairA = node;
+                pairB = nearest;
+            }
+        } else {
+            pairValid = false;
+        }
+    }
+
+    /**
+     * Record a node leaving the set, while it is still at its old position.
+     *
+     * @param node The node which is being removed.
+     */
+    void removed(Node node) {
+        if (node.x == xmin || node.x == xmax
+                || node.y == ymin || node.y == ymax) {
+            boundsValid = false;
+        }
+        if (node == pairA || node == pairB) {
+            pairValid = false;
+        }
+    }
+
+    private void extend(Point point) {
+        xmin = Math.min(xmin, point.x);
+        ymin = Math.min(ymin, point.y);
+        xmax = Math.max(xmax, point.x);
+        ymax = Math.max(ymax, point.y);
+    }
+
+    // https://en.wikipedia.org/wiki/Closest_pair_of_points_problem
+    private void computeClosestPair() {
+        shortest = Integer.MAX_VALUE;
+        pairA = pairB = null;
+        if (nodes.size() < 2) {
+            return;
+        }
+        Node[] byX = nodes.toArray(new Node[nodes.size()]);
+        Arrays.sort(byX, Node.xComparator());
+        Node[] byY = byX.clone();
+        closest(byX, byY, new Node[byX.length], 0, byX.length - 1);
+    }
+
+    /*
+     * Finds the closest pair in byX[lo..hi], leaving byY[lo..hi] holding the
+     * same nodes sorted by y.
+     */
+    private void closest(Node[] byX, Node[] byY, Node[] aux, int lo, int hi) {
+        if (hi <= lo) {
+            return;
+        }
+        int mid = lo + (hi - lo) / 2;
+        int midX = byX[mid].x;
+        closest(byX, byY, aux, lo, mid);
+        closest(byX, byY, aux, mid + 1, hi);
+        merge(byY, aux, lo, mid, hi);
+
+        // Only nodes within the best distance of the dividing line can form
+        // a closer pair across it, and each has a bounded number of such
+        // nodes above it.
+        int m = 0;
+        for (int i = lo; i <= hi; i++) {
+            if (Math.abs(byY[i].x - midX) < shortest) {
+                aux[m++] = byY[i];
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            for (int j = i + 1; j < m && aux[j].y - aux[i].y < shortest; j++) {
+                double dist = aux[i].distance(aux[j]);
+                if (dist < shortest) {
+                    shortest = dist;
+                    pairA = aux[i];
+                    pairB = aux[j];
+                }
+            }
+        }
+    }
+
+    private static void merge(Node[] a, Node[] aux, int lo, int mid, int hi) {
+        System.arraycopy(a, lo, aux, lo, hi - lo + 1);
+        int i = lo;
+        int j = mid + 1;
+        for (int k = lo; k <= hi; k++) {
+            if (i > mid) {
+                a[k] = aux[j++];
+            } else if (j > hi) {
+                a[k] = aux[i++];
+            } else if (aux[j].y < aux[i].y) {
+                a[k] = aux[j++];
+            } else {
+                a[k] = aux[i++];
+            }
+        }
+    }
+
+}
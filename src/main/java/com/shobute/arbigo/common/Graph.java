@@ -28,11 +28,14 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.Line2D;
 import java.io.Serializable;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -42,7 +45,23 @@ import java.util.Set;
  */
 public class Graph implements Serializable {
 
+    // Pinned to the value serialver gave the original class, so boards saved
+    // before fields were added still load.
+    private static final long serialVersionUID = -2489745376166782995L;
+
+    /**
+     * Nodes drawn smaller than this many pixels across are left out of
+     * views.
+     */
+    public static final double MIN_NODE_PIXELS = 2;
+
+    static final BasicStroke EDGE_STROKE = new BasicStroke(2);
+    static final int NODE_SIZE = 10;
+
     private final Set<Node> nodes;
+    private transient SpatialIndex index;
+    private transient Geometry geometry;
+    private transient EdgeMesh edgeMesh;
     private final int nodeSize;
     private Color colour;
 
@@ -51,7 +70,7 @@ public class Graph implements Serializable {
      */
     public Graph() {
         nodes = new HashSet<>();
-        nodeSize = 10;
+        nodeSize = NODE_SIZE;
         colour = Color.BLACK;
     }
 
@@ -99,17 +118,8 @@ public class Graph implements Serializable {
      * @return A new Point at the origin.
      */
     public Point getOrigin() {
-        int xmin = Integer.MAX_VALUE;
-        int ymin = Integer.MAX_VALUE;
-        for (Node node : nodes) {
-            if (node.x < xmin) {
-                xmin = node.x;
-            }
-            if (node.y < ymin) {
-                ymin = node.y;
-            }
-        }
-        return new Point(xmin, ymin);
+        Rectangle bounds = getGeometry().getBounds();
+        return bounds == null ? new Point() : bounds.getLocation();
     }
 
     /**
@@ -122,27 +132,16 @@ public class Graph implements Serializable {
         if (nodes.size() < 2) {
             return new Dimension();
         }
+        return getGeometry().getBounds().getSize();
+    }
 
-        int xmin = Integer.MAX_VALUE;
-        int xmax = Integer.MIN_VALUE;
-        int ymin = Integer.MAX_VALUE;
-        int ymax = Integer.MIN_VALUE;
-
-        for (Node node : nodes) {
-            if (node.x < xmin) {
-                xmin = node.x;
-            } else if (node.x > xmax) {
-                xmax = node.x;
-            }
-
-            if (node.y < ymin) {
-                ymin = node.y;
-            } else if (node.y > ymax) {
-                ymax = node.y;
-            }
-        }
-
-        return new Dimension(xmax - xmin, ymax - ymin);
+    /**
+     * Gets the smallest rectangle containing the centre of every node.
+     *
+     * @return A new Rectangle, or null if the graph is empty.
+     */
+    public Rectangle getBounds() {
+        return getGeometry().getBounds();
     }
 
     /**
@@ -151,98 +150,67 @@ public class Graph implements Serializable {
      * @return A floored integer of the stone radius.
      */
     public int getShortestRadius() {
-        Node[] nodesByX = new Node[nodes.size()];
-        Node[] nodesByY = new Node[nodes.size()];
-        int i = 0;
-        for (Node n : nodes) {
-            nodesByX[i] = n;
-            nodesByY[i] = n;
-            i++;
-        }
-        Arrays.sort(nodesByX, Node.xComparator());
-        Arrays.sort(nodesByY, Node.yComparator());
-
-        return (int) (getShortestDistance(nodesByX, nodesByY) / 2);
+        return (int) (getGeometry().getShortestDistance() / 2);
     }
 
-    // https://en.wikipedia.org/wiki/Closest_pair_of_points_problem
-    private double getShortestDistance(Node[] nodesByX, Node[] nodesByY) {
-
-        if (nodesByX.length <= 1) {
-            return Integer.MAX_VALUE;
-        }
-        if (nodesByX.length <= 2) {
-            return nodesByX[0].distance(nodesByX[1]);
+    /**
+     * Finds the Node within distance of a particular point.
+     *
+     * @param point The point to look at.
+     * @param distance The distance to consider.
+     * @return The closest such Node, or null if no Node was found.
+     */
+    public Node nodeAt(Point point, int distance) {
+        if (point == null) {
+            return null;
         }
+        return getIndex().nearest(point, distance);
+    }
 
-        int mid = nodesByX.length / 2;
-
-        Node[] leftX = Arrays.copyOfRange(nodesByX, 0, mid);
-        Node[] rightX = Arrays.copyOfRange(nodesByX, mid + 1,
-                nodesByX.length - 1);
-
-        int midX = leftX[leftX.length - 1].x;
+    /**
+     * Finds the Nodes inside a rectangle, including its edges.
+     *
+     * @param bounds The rectangle to look in.
+     * @return A new list of the Nodes found, in no particular order.
+     */
+    public List<Node> nodesIn(Rectangle bounds) {
+        List<Node> result = new ArrayList<>();
+        getIndex().query(bounds, result);
+        return result;
+    }
 
-        Node[] leftY = new Node[nodesByY.length];
-        Node[] rightY = new Node[nodesByY.length];
-        int i = 0;
-        int j = 0;
-        for (Node node : nodesByY) {
-            if (node != null) {
-                if (node.x <= midX) {
-                    leftY[i++] = node;
-                } else {
-                    rightY[j++] = node;
-                }
-            }
+    // Built on first use, and again after the graph has been deserialised.
+    EdgeMesh getEdgeMesh() {
+        if (edgeMesh == null) {
+            edgeMesh = new EdgeMesh(nodes);
         }
+        return edgeMesh;
+    }
 
-        double distLeft = getShortestDistance(leftX, leftY);
-        double distRight = getShortestDistance(rightX, rightY);
-
-        double distMin = Math.min(distLeft, distRight);
-
-        Node[] yStrip = new Node[nodesByY.length];
-        i = 0;
-        for (Node node : nodesByY) {
-            if (node != null && Math.abs(node.x - midX) < distMin) {
-                yStrip[i++] = node;
-            }
+    private Geometry getGeometry() {
+        if (geometry == null) {
+            geometry = new Geometry(nodes);
         }
+        return geometry;
+    }
 
-        for (i = 0; i < mid; i++) {
-            j = i + 1;
-            while (j < yStrip.length && yStrip[j] != null
-                    && yStrip[j].y - yStrip[i].y < distMin) {
-                double dist = yStrip[j].distance(yStrip[i]);
-                if (dist < distMin) {
-                    distMin = dist;
-                }
-                j++;
+    private SpatialIndex getIndex() {
+        if (index == null) {
+            index = new SpatialIndex();
+            for (Node node : nodes) {
+                index.add(node);
             }
         }
-
-        return distMin;
+        return index;
     }
 
     /**
-     * Finds the Node within distance of a particular point.
+     * Get the colour the graph's edges are drawn in.
      *
-     * @param point The point to look at.
-     * @param distance The distance to consider.
-     * @return The first found Node, or null if no Node was found.
+     * @return The colour.
      */
-    public Node nodeAt(Point point, int distance) {
-        if (point == null) {
-            return null;
-        }
-
-        for (Node node : nodes) {
-            if (node.distance(point) < distance) {
-                return node;
-            }
-        }
-        return null;
+    public Color getColour() {
+        return colour;
     }
 
     /**
@@ -274,7 +242,94 @@ public class Graph implements Serializable {
      * @return true if the node was added, false otherwise.
      */
     public final Boolean addNode(Node node) {
-        return nodes.add(node);
+        if (nodes.contains(node)) {
+            return false;
+        }
+        if (geometry != null) {
+            geometry.added(node, getIndex());
+        }
+        nodes.add(node);
+        edgeMesh = null;
+        if (index != null) {
+            index.add(node);
+        }
+        return true;
+    }
+
+    /**
+     * Move a node in the graph. Nodes in a graph must be moved through this
+     * method rather than directly, so lookups keep finding them.
+     *
+     * @param node The node to move.
+     * @param point Where the node should move to.
+     */
+    public void moveNode(Node node, Point point) {
+        if (!nodes.contains(node)) {
+            node.setLocation(point);
+            return;
+        }
+        edgeMesh = null;
+        SpatialIndex spatialIndex = getIndex();
+        spatialIndex.remove(node);
+        if (geometry != null) {
+            geometry.removed(node);
+        }
+        node.setLocation(point);
+        if (geometry != null) {
+            geometry.added(node, spatialIndex);
+        }
+        spatialIndex.add(node);
+    }
+
+    /**
+     * Add an edge between two nodes. Edges between nodes already in the graph
+     * should be added here rather than on the nodes, so painting sees them.
+     *
+     * @param a One end of the edge.
+     * @param b The other end.
+     */
+    public void addEdge(Node a, Node b) {
+        a.addAdjacentNode(b);
+        b.addAdjacentNode(a);
+        edgeMesh = null;
+    }
+
+    /**
+     * Remove an edge from both of its ends.
+     *
+     * @param a One end of the edge.
+     * @param b The other end.
+     */
+    public void removeEdge(Node a, Node b) {
+        a.removeAdjacentNode(b);
+        b.removeAdjacentNode(a);
+        edgeMesh = null;
+    }
+
+    /**
+     * Remove a node and its edges, visiting only its neighbours rather than
+     * the whole graph. Every edge of the node must run both ways, as edges
+     * added with addEdge do.
+     *
+     * @param node The node to be removed.
+     * @return True if the node was removed, false otherwise.
+     */
+    public Boolean detachNode(Node node) {
+        if (!nodes.remove(node)) {
+            return false;
+        }
+        if (geometry != null) {
+            geometry.removed(node);
+        }
+        for (Node adjacent : node.getAdjacentNodes()) {
+            adjacent.removeAdjacentNode(node);
+        }
+        node.getAdjacentNodes().clear();
+        edgeMesh = null;
+        if (index != null) {
+            index.remove(node);
+        }
+        return true;
     }
 
     /**
@@ -284,10 +339,20 @@ public class Graph implements Serializable {
      * @return True if the node was removed, false otherwise.
      */
     public Boolean removeNode(Node nodeToRemove) {
+        if (geometry != null && nodes.contains(nodeToRemove)) {
+            geometry.removed(nodeToRemove);
+        }
         for (Node node : nodes) {
             node.removeAdjacentNode(nodeToRemove);
         }
-        return nodes.remove(nodeToRemove);
+        if (!nodes.remove(nodeToRemove)) {
+            return false;
+        }
+        edgeMesh = null;
+        if (index != null) {
+            index.remove(nodeToRemove);
+        }
+        return true;
     }
 
     /**
@@ -299,6 +364,46 @@ public class Graph implements Serializable {
         return nodes;
     }
     
+    /**
+     * Copy the graph into new nodes. Edges to nodes outside the graph are
+     * dropped, and every edge in the copy runs both ways.
+     *
+     * @return A new graph.
+     */
+    public Graph copy() {
+        Map<Node, Node> copies = new IdentityHashMap<>();
+        for (Node node : nodes) {
+            Node copy = new Node(node);
+            copy.setColour(node.getColour());
+            copies.put(node, copy);
+        }
+        Graph graph = new Graph();
+        graph.setColour(colour);
+        for (Node node : nodes) {
+            for (Node adjacent : node.getAdjacentNodes()) {
+                Node copy = copies.get(adjacent);
+                if (copy != null) {
+                    copies.get(node).addAdjacentNode(copy);
+                    copy.addAdjacentNode(copies.get(node));
+                }
+            }
+        }
+        for (Node copy : copies.values()) {
+            graph.addNode(copy);
+        }
+        return graph;
+    }
+
+    /**
+     * Take an immutable snapshot of the graph for games and engines to walk.
+     * Later changes to the graph are not reflected in the snapshot.
+     *
+     * @return A new frozen graph.
+     */
+    public FrozenGraph freeze() {
+        return new FrozenGraph(nodes);
+    }
+
     public boolean hasAnEdge() {
         for (Node node : nodes) {
             if (node.getAdjacentNodes().size() > 0) return true;
@@ -351,8 +456,30 @@ public class Graph implements Serializable {
      * @param g2d Graphics2D context.
      */
     public void paintNodes(Graphics2D g2d) {
+        fillNodes(g2d, getNodes());
+    }
+
+    /**
+     * Paint the graph's nodes which can be seen. Within a view nothing is
+     * painted when the nodes would be smaller than MIN_NODE_PIXELS on screen.
+     *
+     * @param g2d Graphics2D context.
+     * @param view The area to paint in graph coordinates, or null for all.
+     */
+    public void paintNodes(Graphics2D g2d, Rectangle view) {
+        int z = getNodeSize();
+        if (view == null) {
+            fillNodes(g2d, getNodes());
+        } else if (z * getScale(g2d) >= MIN_NODE_PIXELS) {
+            Rectangle area = new Rectangle(view);
+            area.grow(z, z);
+            fillNodes(g2d, nodesIn(area));
+        }
+    }
+
+    private void fillNodes(Graphics2D g2d, Iterable<Node> visible) {
         int z = getNodeSize();
-        for (Node node : getNodes()) {
+        for (Node node : visible) {
             g2d.setColor(node.getColour());
             g2d.fill(new Ellipse2D.Float(node.x - z / 2, node.y - z / 2, z, z));
             //g2d.drawString("(" + node.x + ", " + node.y + ")", node.x, node.y);
@@ -365,16 +492,27 @@ public class Graph implements Serializable {
      * @param g2d Graphics2D context.
      */
     public void paintEdges(Graphics2D g2d) {
+        paintEdges(g2d, null);
+    }
+
+    /**
+     * Paint the graph's edges which cross a visible area. The edges are
+     * cached as paths, which are rebuilt after the graph changes.
+     *
+     * @param g2d Graphics2D context.
+     * @param view The area to paint in graph coordinates, or null for all.
+     */
+    public void paintEdges(Graphics2D g2d, Rectangle view) {
         g2d.setColor(colour);
-        g2d.setStroke(new BasicStroke(2));
-        for (Node node : getNodes()) {
-            for (Node adjNode : node.getAdjacentNodes()) {
-                g2d.draw(new Line2D.Float(node.x, node.y, adjNode.x, adjNode.y));
-            }
-        }
+        g2d.setStroke(EDGE_STROKE);
+        getEdgeMesh().paint(g2d, view);
         g2d.setStroke(new BasicStroke());
     }
 
+    private static double getScale(Graphics2D g2d) {
+        return Math.sqrt(Math.abs(g2d.getTransform().getDeterminant()));
+    }
+
     /**
      * Generate a hash code for this graph.
      *
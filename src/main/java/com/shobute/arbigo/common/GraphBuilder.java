@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Collects nodes and edges read from a file into int arrays, then builds
+ * the graph in one pass. Nodes can be named by an edge before their
+ * position is known.
+ *
+ * @author Ben Lloyd
+ */
+final class GraphBuilder {
+
+    private int[] xs = new int[1024];
+    private int[] ys = new int[1024];
+    private final BitSet placed = new BitSet();
+    private int n;
+    private int[] ends = new int[2048];
+    private int m;
+    private Color colour = Color.BLACK;
+
+    /**
+     * Make a node whose position is set later.
+     *
+     * @return The node's id.
+     */
+    int addNode() {
+        if (n == xs.length) {
+            xs = Arrays.copyOf(xs, n * 2);
+            ys = Arrays.copyOf(ys, n * 2);
+        }
+        return n++;
+    }
+
+    int addNode(int x, int y) {
+        int id = addNode();
+        setPosition(id, x, y);
+        return id;
+    }
+
+    void setPosition(int id, int x, int y) {
+        xs[id] = x;
+        ys[id] = y;
+        placed.set(id);
+    }
+
+    /**
+     * Join two nodes. Their ids are checked when the graph is built.
+     */
+    void addEdge(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        if (m == ends.length) {
+            ends = Arrays.copyOf(ends, m * 2);
+        }
+        ends[m++] = a;
+        ends[m++] = b;
+    }
+
+    void setColour(Color colour) {
+        this.colour = colour;
+    }
+
+    Graph build() throws IOException {
+        int unplaced = placed.nextClearBit(0);
+        if (unplaced < n) {
+            throw new IOException("Node " + unplaced + " has no position");
+        }
+        int[] offsets = new int[n + 1];
+        for (int j = 0; j < m; j++) {
+            int id = ends[j];
+            if (id < 0 || id >= n) {
+                throw new IOException("Edge to node " + id + ", but there are "
+                        + n + " nodes");
+            }
+            offsets[id + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] neighbours = new int[m];
+        for (int j = 0; j < m; j += 2) {
+            neighbours[next[ends[j]]++] = ends[j + 1];
+            neighbours[next[ends[j + 1]]++] = ends[j];
+        }
+        ends = null;
+        return BoardFile.build(IntBuffer.wrap(xs, 0, n), IntBuffer.wrap(ys, 0, n),
+                IntBuffer.wrap(offsets), IntBuffer.wrap(neighbours), colour);
+    }
+
+}
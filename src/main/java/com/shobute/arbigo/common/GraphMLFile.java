@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads and writes boards as GraphML, for boards from other graph tools.
+ * <p>
+ * Node positions are read from data keys named x and y, or from the
+ * geometry yEd writes, whose centre is used. The document is streamed, so
+ * only the graph and a map of node ids are held in memory.
+ *
+ * @author Ben Lloyd
+ */
+public final class GraphMLFile {
+
+    /**
+     * The file name extension for GraphML.
+     */
+    public static final String EXTENSION = ".graphml";
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private GraphMLFile() {
+    }
+
+    /**
+     * Read a GraphML file.
+     *
+     * @param file The file to read.
+     * @return A new graph.
+     * @throws IOException If the file cannot be read or is not a board.
+     */
+    public static Graph read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Read GraphML from a channel.
+     *
+     * @param channel The channel to read from.
+     * @return A new graph.
+     * @throws IOException If the channel cannot be read or is not a board.
+     */
+    public static Graph read(ReadableByteChannel channel) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                false);
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(
+                    new BufferedInputStream(Channels.newInputStream(channel),
+                            BUFFER_BYTES));
+            try {
+                return read(xml);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Not a GraphML file", ex);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Bad number in GraphML file", ex);
+        }
+    }
+
+    private static Graph read(XMLStreamReader xml)
+            throws XMLStreamException, IOException {
+        GraphBuilder builder = new GraphBuilder();
+        Map<String, String> keys = new HashMap<>();
+        Map<String, Integer> ids = new HashMap<>();
+        int node = -1;
+        double x = 0, y = 0;
+        boolean hasX = false, hasY = false;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT
+                    && xml.getLocalName().equals("node")) {
+                if (!hasX || !hasY) {
+                    throw new IOException("Node has no position");
+                }
+                builder.setPosition(node, round(x), round(y));
+                node = -1;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (xml.getLocalName()) {
+                case "key":
+                    keys.put(xml.getAttributeValue(null, "id"),
+                            xml.getAttributeValue(null, "attr.name"));
+                    break;
+                case "node":
+                    node = id(builder, ids, xml.getAttributeValue(null, "id"));
+                    hasX = false;
+                    hasY = false;
+                    break;
+                case "edge":
+                    builder.addEdge(
+                            id(builder, ids, xml.getAttributeValue(null, "source")),
+                            id(builder, ids, xml.getAttributeValue(null, "target")));
+                    break;
+                case "data":
+                    String key = keys.get(xml.getAttributeValue(null, "key"));
+                    if (key == null) {
+                        break;
+                    }
+                    if (node >= 0 && key.equals("x")) {
+                        x = Double.parseDouble(xml.getElementText().trim());
+                        hasX = true;
+                    } else if (node >= 0 && key.equals("y")) {
+                        y = Double.parseDouble(xml.getElementText().trim());
+                        hasY = true;
+                    } else if (node < 0 && key.equals("colour")) {
+                        builder.setColour(new Color((int) Long.parseLong(
+                                xml.getElementText().trim(), 16), true));
+                    }
+                    break;
+                case "Geometry":
+                    if (node >= 0 && !hasX && !hasY) {
+                        x = number(xml, "x") + number(xml, "width") / 2;
+                        y = number(xml, "y") + number(xml, "height") / 2;
+                        hasX = true;
+                        hasY = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return builder.build();
+    }
+
+    private static int id(GraphBuilder builder, Map<String, Integer> ids,
+            String name) throws IOException {
+        if (name == null) {
+            throw new IOException("Node or edge without an id");
+        }
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = builder.addNode();
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    private static double number(XMLStreamReader xml, String attribute) {
+        String value = xml.getAttributeValue(null, attribute);
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+    private static int round(double value) throws IOException {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Coordinate out of range: " + value);
+        }
+        return (int) Math.rint(value);
+    }
+
+    /**
+     * Write a board as GraphML.
+     *
+     * @param graph The board to write.
+     * @param file The file to write it to, which is replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Graph graph, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(graph.freeze(), graph.getColour(), channel);
+        }
+    }
+
+    /**
+     * Write a snapshot of a board as GraphML. Each edge is written once.
+     *
+     * @param frozen The snapshot to write.
+     * @param colour The colour the board is drawn in.
+     * @param channel The channel to write to, which is left open.
+     * @throws IOException If the channel cannot be written to.
+     */
+    public static void write(FrozenGraph frozen, Color colour,
+            WritableByteChannel channel) throws IOException {
+        TextWriter out = new TextWriter(channel);
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+                + "  <key id=\"x\" for=\"node\" attr.name=\"x\" attr.type=\"int\"/>\n"
+                + "  <key id=\"y\" for=\"node\" attr.name=\"y\" attr.type=\"int\"/>\n"
+                + "  <key id=\"colour\" for=\"graph\" attr.name=\"colour\""
+                + " attr.type=\"string\"/>\n"
+                + "  <graph id=\"board\" edgedefault=\"undirected\">\n"
+                + "    <data key=\"colour\">");
+        out.writeHex(colour.getRGB()).write("</data>\n");
+        for (int i = 0; i < frozen.size(); i++) {
+            out.write("    <node id=\"n").writeInt(i)
+                    .write("\"><data key=\"x\">").writeInt(frozen.getX(i))
+                    .write("</data><data key=\"y\">").writeInt(frozen.getY(i))
+                    .write("</data></node>\n");
+        }
+        int[] offsets = frozen.getOffsets();
+        int[] neighbours = frozen.getNeighbours();
+        for (int i = 0; i < frozen.size(); i++) {
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                if (neighbours[j] > i) {
+                    out.write("    <edge source=\"n").writeInt(i)
+                            .write("\" target=\"n").writeInt(neighbours[j])
+                            .write("\"/>\n");
+                }
+            }
+        }
+        out.write("  </graph>\n</graphml>\n");
+        out.finish();
+    }
+
+}
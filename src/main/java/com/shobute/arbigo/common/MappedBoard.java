@@ -0,0 +1,316 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only view of a board file which is memory-mapped rather than read.
+ * Opening one only checks the header, so it costs the same however big the
+ * board is, and the operating system pages coordinates and edges in as they
+ * are used. The rules engine can play on it through {@link #freeze()}, and a
+ * {@link Graph} for editing is only built by {@link #toGraph()}.
+ *
+ * @author Ben Lloyd
+ */
+public final class MappedBoard {
+
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private final ByteBuffer file;
+    private final IntBuffer xs;
+    private final IntBuffer ys;
+    private final IntBuffer offsets;
+    private final IntBuffer neighbours;
+    private final Color colour;
+    private Rectangle bounds;
+    private int shortestRadius = -1;
+
+    private MappedBoard(ByteBuffer file) throws IOException {
+        this.file = file;
+        IntBuffer header = file.asIntBuffer();
+        if (file.limit() < BoardFile.HEADER_BYTES
+                || header.get(0) != BoardFile.MAGIC) {
+            throw new IOException("Not a board file");
+        }
+        if (header.get(1) >>> 16 > BoardFile.VERSION) {
+            throw new IOException("Board file version " + (header.get(1) >>> 16)
+                    + " is newer than this program");
+        }
+        int n = header.get(2);
+        int m = header.get(3);
+        long length = BoardFile.HEADER_BYTES + 4L * (3L * n + 1 + m) + 4;
+        if (n < 0 || m < 0 || length != file.limit()) {
+            throw new IOException("Corrupt board file");
+        }
+        colour = new Color(header.get(4), true);
+
+        int position = BoardFile.HEADER_BYTES;
+        xs = slice(position, n);
+        ys = slice(position += 4 * n, n);
+        offsets = slice(position += 4 * n, n + 1);
+        neighbours = slice(position + 4 * (n + 1), m);
+    }
+
+    private IntBuffer slice(int position, int ints) {
+        ByteBuffer bytes = file.duplicate();
+        ((Buffer) bytes).position(position);
+        ((Buffer) bytes).limit(position + 4 * ints);
+        return bytes.slice().asIntBuffer();
+    }
+
+    /**
+     * Map a board file.
+     *
+     * @param path The file to map.
+     * @return A view of the board.
+     * @throws IOException If the file cannot be mapped or its header is not
+     * that of a board this program can read.
+     */
+    public static MappedBoard open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Board file is too large to map");
+            }
+            return new MappedBoard(channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size()));
+        }
+    }
+
+    /**
+     * Check the whole file against its checksum and check every edge. This
+     * reads every page of the file.
+     *
+     * @throws IOException If the file is corrupt.
+     */
+    public void verify() throws IOException {
+        ByteBuffer bytes = file.duplicate();
+        ((Buffer) bytes).limit(file.limit() - 4);
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[CHUNK_BYTES];
+        while (bytes.hasRemaining()) {
+            int length = Math.min(chunk.length, bytes.remaining());
+            bytes.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        if (file.getInt(file.limit() - 4) != (int) crc.getValue()) {
+            throw new IOException("Board file checksum does not match");
+        }
+        BoardFile.check(offsets, neighbours);
+    }
+
+    /**
+     * Get the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return xs.limit();
+    }
+
+    /**
+     * Get the number of undirected edges.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return neighbours.limit() / 2;
+    }
+
+    /**
+     * Get the colour the board's edges are drawn in.
+     *
+     * @return The colour.
+     */
+    public Color getColour() {
+        return colour;
+    }
+
+    /**
+     * Get the x coordinate of a node.
+     *
+     * @param id The node's id.
+     * @return The x coordinate.
+     */
+    public int getX(int id) {
+        return xs.get(id);
+    }
+
+    /**
+     * Get the y coordinate of a node.
+     *
+     * @param id The node's id.
+     * @return The y coordinate.
+     */
+    public int getY(int id) {
+        return ys.get(id);
+    }
+
+    /**
+     * Get the number of nodes adjacent to a node.
+     *
+     * @param id The node's id.
+     * @return The node's degree.
+     */
+    public int getDegree(int id) {
+        return offsets.get(id + 1) - offsets.get(id);
+    }
+
+    /**
+     * Get one of the nodes adjacent to a node.
+     *
+     * @param id The node's id.
+     * @param index Which neighbour, from 0 to the node's degree - 1.
+     * @return The neighbour's id.
+     */
+    public int getNeighbour(int id, int index) {
+        return neighbours.get(offsets.get(id) + index);
+    }
+
+    /**
+     * Gets the smallest rectangle containing the centre of every node. The
+     * first call reads every coordinate.
+     *
+     * @return The bounds, or null if the board is empty.
+     */
+    public synchronized Rectangle getBounds() {
+        if (bounds == null && size() > 0) {
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int id = 0; id < size(); id++) {
+                minX = Math.min(minX, xs.get(id));
+                minY = Math.min(minY, ys.get(id));
+                maxX = Math.max(maxX, xs.get(id));
+                maxY = Math.max(maxY, ys.get(id));
+            }
+            bounds = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+        }
+        return bounds == null ? null : new Rectangle(bounds);
+    }
+
+    /**
+     * Gets half the length of the shortest edge, which is how large stones
+     * can be drawn. Unlike {@link Graph#getShortestRadius()} nodes which
+     * are not joined are not compared. The first call reads every edge.
+     *
+     * @return The radius, or half the node size if there are no edges.
+     */
+    public synchronized int getShortestRadius() {
+        if (shortestRadius < 0) {
+            double shortest = Double.MAX_VALUE;
+            for (int id = 0; id < size(); id++) {
+                for (int i = offsets.get(id); i < offsets.get(id + 1); i++) {
+                    int adj = neighbours.get(i);
+                    shortest = Math.min(shortest, Math.hypot(
+                            xs.get(adj) - xs.get(id), ys.get(adj) - ys.get(id)));
+                }
+            }
+            shortestRadius = shortest == Double.MAX_VALUE
+                    ? Graph.NODE_SIZE / 2 : (int) (shortest / 2);
+        }
+        return shortestRadius;
+    }
+
+    /**
+     * Paint every edge once.
+     *
+     * @param g2d Graphics2D context.
+     */
+    public void paintEdges(Graphics2D g2d) {
+        g2d.setColor(colour);
+        g2d.setStroke(Graph.EDGE_STROKE);
+        Line2D.Float line = new Line2D.Float();
+        for (int id = 0; id < size(); id++) {
+            for (int i = offsets.get(id); i < offsets.get(id + 1); i++) {
+                int adj = neighbours.get(i);
+                if (adj > id) {
+                    line.setLine(xs.get(id), ys.get(id), xs.get(adj),
+                            ys.get(adj));
+                    g2d.draw(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Paint every node, unless they would be smaller than
+     * Graph.MIN_NODE_PIXELS.
+     *
+     * @param g2d Graphics2D context.
+     */
+    public void paintNodes(Graphics2D g2d) {
+        int z = Graph.NODE_SIZE;
+        double scale = Math.sqrt(Math.abs(g2d.getTransform().getDeterminant()));
+        if (z * scale < Graph.MIN_NODE_PIXELS) {
+            return;
+        }
+        g2d.setColor(Color.BLACK);
+        Ellipse2D.Float ellipse = new Ellipse2D.Float();
+        for (int id = 0; id < size(); id++) {
+            ellipse.setFrame(xs.get(id) - z / 2, ys.get(id) - z / 2, z, z);
+            g2d.fill(ellipse);
+        }
+    }
+
+    /**
+     * Get a frozen graph the rules engine can play on. Only the edges are
+     * copied onto the heap, since every game keeps per node arrays of the
+     * same size; coordinates stay in the file and nodes are made as they
+     * are asked for.
+     *
+     * @return A new frozen graph with the same node ids as the file.
+     */
+    public FrozenGraph freeze() {
+        int[] rows = new int[offsets.limit()];
+        int[] all = new int[neighbours.limit()];
+        offsets.duplicate().get(rows);
+        neighbours.duplicate().get(all);
+        return new FrozenGraph(xs, ys, rows, all);
+    }
+
+    /**
+     * Build an editable graph of the board.
+     *
+     * @return A new graph.
+     */
+    public Graph toGraph() {
+        return BoardFile.build(xs, ys, offsets, neighbours, colour);
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Times the frames a component paints and the phases within them. Each call
+ * to mark() charges the time since the previous mark, or since the frame
+ * began, to the named phase. The totals can be drawn over the component and
+ * are published over JMX once registered.
+ *
+ * @author Ben Lloyd
+ */
+public class RenderStats implements RenderStatsMXBean {
+
+    /**
+     * Set this system property to true to show statistics from the start.
+     */
+    public static final String PROPERTY = "arbigo.hud";
+
+    private static final int BUCKETS = 32;
+    private static final int LINE_HEIGHT = 14;
+
+    private final String name;
+    private final String[] phases;
+    private final long[] lastPhase;
+    private final long[] phaseTotals;
+    private final long[][] phaseHistograms;
+    private final long[] frameHistogram;
+    private final long[] frameTimes;
+
+    private long paintCount;
+    private long frameStart;
+    private long markTime;
+    private long lastFrame;
+    private ObjectName objectName;
+
+    /**
+     * Create statistics for a component.
+     *
+     * @param name The name to publish the statistics under.
+     * @param phases The names of the phases each frame is split into.
+     */
+    public RenderStats(String name, String... phases) {
+        this.name = name;
+        this.phases = phases.clone();
+        lastPhase = new long[phases.length];
+        phaseTotals = new long[phases.length];
+        phaseHistograms = new long[phases.length][BUCKETS];
+        frameHistogram = new long[BUCKETS];
+        frameTimes = new long[128];
+    }
+
+    /**
+     * Whether statistics should be shown when a component is created.
+     *
+     * @return True if the system property is set.
+     */
+    public static boolean isShownByDefault() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * Start timing a frame.
+     */
+    public synchronized void beginFrame() {
+        frameStart = System.nanoTime();
+        markTime = frameStart;
+        for (int i = 0; i < phases.length; i++) {
+            lastPhase[i] = 0;
+        }
+        frameTimes[(int) (paintCount % frameTimes.length)] = frameStart;
+        paintCount++;
+    }
+
+    /**
+     * Charge the time since the last mark to a phase.
+     *
+     * @param phase The name of the phase which has just finished.
+     */
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        for (int i = 0; i < phases.length; i++) {
+            if (phases[i].equals(phase)) {
+                long elapsed = now - markTime;
+                lastPhase[i] += elapsed;
+                phaseTotals[i] += elapsed;
+                phaseHistograms[i][bucket(elapsed)]++;
+                break;
+            }
+        }
+        markTime = now;
+    }
+
+    /**
+     * Finish timing a frame.
+     */
+    public synchronized void endFrame() {
+        lastFrame = System.nanoTime() - frameStart;
+        frameHistogram[bucket(lastFrame)]++;
+    }
+
+    private static int bucket(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Draw the statistics for the latest frame in the top left corner of a
+     * component.
+     *
+     * @param g2d Graphics2D context, in component coordinates.
+     */
+    public void paint(Graphics2D g2d) {
+        String[] lines;
+        synchronized (this) {
+            lines = new String[phases.length + 2];
+            lines[0] = String.format("%.2f ms  %.0f fps",
+                    getLastFrameMillis(), getFramesPerSecond());
+            lines[1] = paintCount + " paints";
+            for (int i = 0; i < phases.length; i++) {
+                lines[i + 2] = String.format("%-7s %.2f ms", phases[i],
+                        lastPhase[i] / 1e6);
+            }
+        }
+        Rectangle bounds = getBounds();
+        g2d.setColor(new Color(0, 0, 0, 160));
+        g2d.fill(bounds);
+        g2d.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g2d.drawString(lines[i], bounds.x + 5,
+                    bounds.y + (i + 1) * LINE_HEIGHT);
+        }
+    }
+
+    /**
+     * Get the area the statistics are drawn in.
+     *
+     * @return A new rectangle in component coordinates.
+     */
+    public Rectangle getBounds() {
+        return new Rectangle(5, 5, 140, (phases.length + 2) * LINE_HEIGHT + 6);
+    }
+
+    /**
+     * Publish the statistics on the platform MBean server.
+     */
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName candidate = new ObjectName("com.shobute.arbigo:type="
+                    + "RenderStats,name=" + ObjectName.quote(name) + ",id="
+                    + System.identityHashCode(this));
+            server.registerMBean(this, candidate);
+            objectName = candidate;
+        } catch (JMException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Stop publishing the statistics.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    objectName);
+        } catch (JMException ex) {
+            ex.printStackTrace();
+        }
+        objectName = null;
+    }
+
+    /**
+     * Get the name the statistics are published under, if registered.
+     *
+     * @return The name, or null.
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public synchronized long getPaintCount() {
+        return paintCount;
+    }
+
+    @Override
+    public synchronized double getFramesPerSecond() {
+        long now = System.nanoTime();
+        long since = now - TimeUnit.SECONDS.toNanos(1);
+        int frames = 0;
+        int kept = (int) Math.min(paintCount, frameTimes.length);
+        for (int i = 0; i < kept; i++) {
+            if (frameTimes[i] - since > 0) {
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    @Override
+    public synchronized double getLastFrameMillis() {
+        return lastFrame / 1e6;
+    }
+
+    @Override
+    public synchronized long[] getFrameHistogram() {
+        return frameHistogram.clone();
+    }
+
+    @Override
+    public synchronized Map<String, Double> getLastPhaseMillis() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i = 0; i < phases.length; i++) {
+            result.put(phases[i], lastPhase[i] / 1e6);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseNanos() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < phases.length; i++) {
+            result.put(phases[i], phaseTotals[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, long[]> getPhaseHistograms() {
+        Map<String, long[]> result = new LinkedHashMap<>();
+        for (int i = 0; i < phases.length; i++) {
+            result.put(phases[i], phaseHistograms[i].clone());
+        }
+        return result;
+    }
+
+}
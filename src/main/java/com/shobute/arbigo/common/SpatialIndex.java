@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid of buckets over node positions, so that finding the nodes
+ * near a point or within a rectangle only looks at the buckets that overlap
+ * it.
+ *
+ * @author Ben Lloyd
+ */
+class SpatialIndex {
+
+    // Cells are 2^SHIFT pixels square.
+    private static final int SHIFT = 5;
+
+    private final Map<Long, List<Node>> cells = new HashMap<>();
+
+    void add(Node node) {
+        long key = key(node.x >> SHIFT, node.y >> SHIFT);
+        List<Node> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(2);
+            cells.put(key, cell);
+        }
+        cell.add(node);
+    }
+
+    void remove(Node node) {
+        long key = key(node.x >> SHIFT, node.y >> SHIFT);
+        List<Node> cell = cells.get(key);
+        if (cell != null && cell.remove(node) && cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    /**
+     * Whether a search within distance of a point looks at no more cells
+     * than there are in use, so is worth doing instead of a full scan.
+     */
+    boolean isLocal(int distance) {
+        long side = ((2L * distance) >> SHIFT) + 2;
+        return side * side <= Math.max(cells.size(), 64);
+    }
+
+    Node nearest(Point point, int distance) {
+        Nearest nearest = new Nearest(point, distance);
+        // In long arithmetic, as the distance may be near Integer.MAX_VALUE.
+        long x0 = ((long) point.x - distance) >> SHIFT;
+        long x1 = ((long) point.x + distance) >> SHIFT;
+        long y0 = ((long) point.y - distance) >> SHIFT;
+        long y1 = ((long) point.y + distance) >> SHIFT;
+        // Walk whichever is smaller: the cells covered, or the cells in use.
+        if ((double) (x1 - x0 + 1) * (y1 - y0 + 1) > cells.size()) {
+            for (List<Node> cell : cells.values()) {
+                nearest.check(cell);
+            }
+            return nearest.node;
+        }
+        for (long cx = x0; cx <= x1; cx++) {
+            for (long cy = y0; cy <= y1; cy++) {
+                List<Node> cell = cells.get(key((int) cx, (int) cy));
+                if (cell != null) {
+                    nearest.check(cell);
+                }
+            }
+        }
+        return nearest.node;
+    }
+
+    private static final class Nearest {
+
+        final Point point;
+        double best;
+        Node node;
+
+        Nearest(Point point, double distance) {
+            this.point = point;
+            this.best = distance;
+        }
+
+        void check(List<Node> cell) {
+            for (Node candidate : cell) {
+                double d = candidate.distance(point);
+                if (d < best) {
+                    best = d;
+                    node = candidate;
+                }
+            }
+        }
+
+    }
+
+    void query(Rectangle bounds, Collection<Node> result) {
+        int x0 = bounds.x >> SHIFT;
+        int x1 = (bounds.x + bounds.width) >> SHIFT;
+        int y0 = bounds.y >> SHIFT;
+        int y1 = (bounds.y + bounds.height) >> SHIFT;
+        // Walk whichever is smaller: the cells covered, or the cells in use.
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > cells.size()) {
+            for (List<Node> cell : cells.values()) {
+                addContained(cell, bounds, result);
+            }
+            return;
+        }
+        for (int cx = x0; cx <= x1; cx++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                List<Node> cell = cells.get(key(cx, cy));
+                if (cell != null) {
+                    addContained(cell, bounds, result);
+                }
+            }
+        }
+    }
+
+    private static void addContained(List<Node> cell, Rectangle bounds,
+            Collection<Node> result) {
+        for (Node node : cell) {
+            if (node.x >= bounds.x && node.y >= bounds.y
+                    && node.x <= bounds.x + bounds.width
+                    && node.y <= bounds.y + bounds.height) {
+                result.add(node);
+            }
+        }
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+}
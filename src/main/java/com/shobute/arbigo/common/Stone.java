@@ -26,7 +26,9 @@ package com.shobute.arbigo.common;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
 import java.io.Serializable;
 import java.util.Objects;
 
@@ -61,6 +63,34 @@ public class Stone implements Serializable {
         g2d.draw(circle);
     }
 
+    /**
+     * Paint the stone from a cached image, so nothing needs drawing or
+     * antialiasing. The context must not be scaled; the position is in its
+     * pixels, and is rounded to the nearest pixel.
+     *
+     * @param g2d Graphics2D context, in pixel coordinates.
+     * @param x The x coordinate of the centre.
+     * @param y The y coordinate of the centre.
+     * @param r The radius in graph units.
+     * @param alpha The opacity, from 0 to 255.
+     * @param scale The number of pixels per graph unit.
+     */
+    public void paintSprite(Graphics2D g2d, double x, double y, int r,
+            int alpha, double scale) {
+        BufferedImage sprite = StoneSprites.get(this, r, alpha, scale);
+        if (sprite == null) {
+            AffineTransform transform = g2d.getTransform();
+            g2d.translate(x, y);
+            g2d.scale(scale, scale);
+            paint(g2d, 0, 0, r, alpha);
+            g2d.setTransform(transform);
+            return;
+        }
+        double half = sprite.getWidth() / 2.0;
+        g2d.drawImage(sprite, (int) Math.round(x - half),
+                (int) Math.round(y - half), null);
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
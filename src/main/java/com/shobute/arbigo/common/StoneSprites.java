@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Prerendered, antialiased images of stones, shared by every board. Images
+ * are kept for the most recently used combinations of colour, radius, alpha
+ * and scale, and all of them are dropped when a board changes size.
+ *
+ * @author Ben Lloyd
+ */
+public final class StoneSprites {
+
+    /**
+     * Stones wider than this many pixels are painted directly instead.
+     */
+    public static final int MAX_SIZE = 256;
+
+    private static final int MAX_ENTRIES = 64;
+
+    private static final Map<Key, BufferedImage> sprites
+            = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Key, BufferedImage> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private StoneSprites() {
+    }
+
+    /**
+     * Get the width and height of the image of a stone, which covers its
+     * outline and antialiasing.
+     *
+     * @param r The radius of the stone in graph units.
+     * @param scale The number of pixels per graph unit.
+     * @return The size in pixels.
+     */
+    public static int size(int r, double scale) {
+        return (int) Math.ceil(2 * (r + 1) * scale) + 2;
+    }
+
+    /**
+     * Get the image of a stone, drawing it if it is not cached. The stone's
+     * centre is at the centre of the image.
+     *
+     * @param stone The stone to draw.
+     * @param r The radius of the stone in graph units.
+     * @param alpha The opacity of the stone, from 0 to 255.
+     * @param scale The number of pixels per graph unit.
+     * @return The image, or null if it would be larger than MAX_SIZE.
+     */
+    public static synchronized BufferedImage get(Stone stone, int r,
+            int alpha, double scale) {
+        int size = size(r, scale);
+        if (size > MAX_SIZE) {
+            return null;
+        }
+        Key key = new Key(stone.getColour(), r, alpha, scale);
+        BufferedImage sprite = sprites.get(key);
+        if (sprite == null) {
+            sprite = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = sprite.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.translate(size / 2.0, size / 2.0);
+            g2d.scale(scale, scale);
+            stone.paint(g2d, 0, 0, r, alpha);
+            g2d.dispose();
+            sprites.put(key, sprite);
+        }
+        return sprite;
+    }
+
+    /**
+     * Drop every cached image.
+     */
+    public static synchronized void clear() {
+        sprites.clear();
+    }
+
+    private static final class Key {
+
+        private final Color colour;
+        private final int r;
+        private final int alpha;
+        private final double scale;
+
+        Key(Color colour, int r, int alpha, double scale) {
+            this.colour = colour;
+            this.r = r;
+            this.alpha = alpha;
+            this.scale = scale;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + Objects.hashCode(colour);
+            hash = 31 * hash + r;
+            hash = 31 * hash + alpha;
+            long bits = Double.doubleToLongBits(scale);
+            hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return r == other.r && alpha == other.alpha
+                    && Double.compare(scale, other.scale) == 0
+                    && Objects.equals(colour, other.colour);
+        }
+
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads line based text a byte at a time through a fixed buffer, turning
+ * numbers into ints without making a string for each token. Blank lines
+ * and lines starting with # are skipped.
+ *
+ * @author Ben Lloyd
+ */
+final class TextScanner {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private int line;
+
+    TextScanner(ReadableByteChannel channel) {
+        this.channel = channel;
+        ((Buffer) buffer).limit(0);
+    }
+
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining()) {
+            ((Buffer) buffer).clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            ((Buffer) buffer).flip();
+            if (read < 0) {
+                return -1;
+            }
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private void skip() {
+        ((Buffer) buffer).position(buffer.position() + 1);
+    }
+
+    private void skipSpaces() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r' || c == ',') {
+            skip();
+            c = peek();
+        }
+    }
+
+    /**
+     * Move to the first token of the next line with any, skipping whatever
+     * is left of the current one.
+     *
+     * @return False at the end of the text.
+     * @throws IOException If the channel cannot be read.
+     */
+    boolean nextLine() throws IOException {
+        if (line > 0) {
+            skipLine();
+        }
+        while (true) {
+            line++;
+            skipSpaces();
+            int c = peek();
+            if (c < 0) {
+                return false;
+            } else if (c == '#') {
+                skipLine();
+            } else if (c == '\n') {
+                skip();
+            } else {
+                return true;
+            }
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c = peek();
+        while (c >= 0 && c != '\n') {
+            skip();
+            c = peek();
+        }
+        if (c == '\n') {
+            skip();
+        }
+    }
+
+    /**
+     * Check whether the current line has another token.
+     *
+     * @return True if there is one.
+     * @throws IOException If the channel cannot be read.
+     */
+    boolean hasToken() throws IOException {
+        skipSpaces();
+        int c = peek();
+        return c >= 0 && c != '\n' && c != '#';
+    }
+
+    /**
+     * Read a word, keeping only its first character.
+     *
+     * @return The first character of the word.
+     * @throws IOException If there is no word or the channel cannot be read.
+     */
+    int nextWord() throws IOException {
+        if (!hasToken()) {
+            throw error("expected a word");
+        }
+        int first = peek();
+        int c = first;
+        while (c > ' ' && c != ',') {
+            skip();
+            c = peek();
+        }
+        return first;
+    }
+
+    /**
+     * Read a number, which may have a fraction or exponent, rounded to the
+     * nearest int.
+     *
+     * @return The number.
+     * @throws IOException If there is no number or the channel cannot be read.
+     */
+    int nextInt() throws IOException {
+        if (!hasToken()) {
+            throw error("expected a number");
+        }
+        boolean negative = false;
+        int c = peek();
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            skip();
+            c = peek();
+        }
+        long whole = 0;
+        int digits = 0;
+        while (c >= '0' && c <= '9') {
+            whole = whole * 10 + (c - '0');
+            if (whole > Integer.MAX_VALUE) {
+                throw error("number out of range");
+            }
+            digits++;
+            skip();
+            c = peek();
+        }
+        double value = whole;
+        if (c == '.') {
+            skip();
+            c = peek();
+            double scale = 0.1;
+            while (c >= '0' && c <= '9') {
+                value += (c - '0') * scale;
+                scale /= 10;
+                digits++;
+                skip();
+                c = peek();
+            }
+        }
+        if (digits == 0) {
+            throw error("expected a number");
+        }
+        if (c == 'e' || c == 'E') {
+            skip();
+            c = peek();
+            boolean negativeExponent = c == '-';
+            if (c == '-' || c == '+') {
+                skip();
+                c = peek();
+            }
+            int exponent = 0;
+            if (c < '0' || c > '9') {
+                throw error("expected a number");
+            }
+            while (c >= '0' && c <= '9') {
+                exponent = Math.min(exponent * 10 + (c - '0'), 999);
+                skip();
+                c = peek();
+            }
+            value *= Math.pow(10, negativeExponent ? -exponent : exponent);
+        }
+        if (c > ' ' && c != ',' && c != '#') {
+            throw error("expected a number");
+        }
+        value = Math.rint(negative ? -value : value);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw error("number out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read a hexadecimal number of up to eight digits.
+     *
+     * @return The number.
+     * @throws IOException If there is no number or the channel cannot be read.
+     */
+    int nextHex() throws IOException {
+        if (!hasToken()) {
+            throw error("expected a hexadecimal number");
+        }
+        int c = peek();
+        int value = 0;
+        int digits = 0;
+        while (Character.digit(c, 16) >= 0 && digits < 8) {
+            value = value << 4 | Character.digit(c, 16);
+            digits++;
+            skip();
+            c = peek();
+        }
+        if (digits == 0 || c > ' ') {
+            throw error("expected a hexadecimal number");
+        }
+        return value;
+    }
+
+    /**
+     * Make an exception pointing at the current line.
+     *
+     * @param message What was wrong.
+     * @return The exception to throw.
+     */
+    IOException error(String message) {
+        return new IOException("Line " + line + ": " + message);
+    }
+
+}
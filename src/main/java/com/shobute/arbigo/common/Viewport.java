@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+
+/**
+ * The part of a graph shown on screen: a uniform scale and a translation,
+ * which can be fitted to a graph, zoomed about a point and panned.
+ *
+ * @author Ben Lloyd
+ */
+public class Viewport {
+
+    private static final double MIN_SCALE = 1e-4;
+    private static final double MAX_SCALE = 1e3;
+
+    private double scale;
+    private double translateX;
+    private double translateY;
+
+    /**
+     * Constructs a viewport showing graph coordinates unchanged.
+     */
+    public Viewport() {
+        scale = 1;
+    }
+
+    /**
+     * Show all of an area, with a margin around it, in a component.
+     *
+     * @param bounds The area to show, in graph coordinates.
+     * @param margin The margin to leave around the area, in graph units.
+     * @param width The width of the component.
+     * @param height The height of the component.
+     */
+    public void fit(Rectangle bounds, int margin, int width, int height) {
+        if (bounds == null) {
+            return;
+        }
+        double fitted = Math.min(width / (bounds.getWidth() + 2.0 * margin),
+                height / (bounds.getHeight() + 2.0 * margin));
+        if (Double.isInfinite(fitted) || Double.isNaN(fitted) || fitted <= 0) {
+            fitted = 1;
+        }
+        scale = fitted;
+        translateX = scale * ((double) margin - bounds.x);
+        translateY = scale * ((double) margin - bounds.y);
+    }
+
+    /**
+     * Zoom in or out, keeping the graph point under an anchor still.
+     *
+     * @param factor How much to multiply the scale by.
+     * @param anchor The point to zoom about, in screen coordinates.
+     */
+    public void zoom(double factor, Point anchor) {
+        double zoomed = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        factor = zoomed / scale;
+        translateX = anchor.x - (anchor.x - translateX) * factor;
+        translateY = anchor.y - (anchor.y - translateY) * factor;
+        scale = zoomed;
+    }
+
+    /**
+     * Move the view.
+     *
+     * @param dx The distance to move right, in screen pixels.
+     * @param dy The distance to move down, in screen pixels.
+     */
+    public void pan(int dx, int dy) {
+        translateX += dx;
+        translateY += dy;
+    }
+
+    /**
+     * Get the number of screen pixels per graph unit.
+     *
+     * @return The scale.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Get the transform from graph to screen coordinates.
+     *
+     * @return A new transform.
+     */
+    public AffineTransform getTransform() {
+        return new AffineTransform(scale, 0, 0, scale, translateX, translateY);
+    }
+
+    /**
+     * Switch a graphics context from screen to graph coordinates.
+     *
+     * @param g2d Graphics2D context.
+     */
+    public void apply(Graphics2D g2d) {
+        g2d.translate(translateX, translateY);
+        g2d.scale(scale, scale);
+    }
+
+    /**
+     * Convert a screen point to graph coordinates.
+     *
+     * @param point A point on screen.
+     * @return A new point in the graph, rounded to the nearest unit.
+     */
+    public Point toGraph(Point point) {
+        return new Point((int) Math.round((point.x - translateX) / scale),
+                (int) Math.round((point.y - translateY) / scale));
+    }
+
+    /**
+     * Convert an area of the screen to graph coordinates.
+     *
+     * @param area An area on screen.
+     * @return A new rectangle covering at least the same part of the graph.
+     */
+    public Rectangle toGraph(Rectangle area) {
+        double x0 = (area.x - translateX) / scale;
+        double y0 = (area.y - translateY) / scale;
+        double x1 = (area.x + area.width - translateX) / scale;
+        double y1 = (area.y + area.height - translateY) / scale;
+        return outer(x0, y0, x1, y1);
+    }
+
+    /**
+     * Convert a graph point to screen coordinates.
+     *
+     * @param point A point in the graph.
+     * @return A new point on screen.
+     */
+    public Point2D toScreen(Point point) {
+        return new Point2D.Double(point.x * scale + translateX,
+                point.y * scale + translateY);
+    }
+
+    /**
+     * Convert an area of the graph to screen coordinates.
+     *
+     * @param area An area of the graph.
+     * @return A new rectangle covering at least the same part of the screen.
+     */
+    public Rectangle toScreen(Rectangle area) {
+        return outer(area.x * scale + translateX, area.y * scale + translateY,
+                (area.x + area.width) * scale + translateX,
+                (area.y + area.height) * scale + translateY);
+    }
+
+    private static Rectangle outer(double x0, double y0, double x1, double y1) {
+        int x = (int) Math.floor(x0);
+        int y = (int) Math.floor(y0);
+        return new Rectangle(x, y, (int) Math.ceil(x1) - x,
+                (int) Math.ceil(y1) - y);
+    }
+
+}
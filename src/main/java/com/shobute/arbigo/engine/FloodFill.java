@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.FrozenGraph;
+import java.util.Arrays;
+
+/**
+ * Finds connected regions of nodes with the same colour, either the stones of
+ * a chain or an area of empty nodes. The fill is iterative and reuses its
+ * buffers, so it allocates nothing per call and copes with regions of any
+ * size.
+ *
+ * Nodes stay visited across fills until clear() is called, which makes it
+ * cheap to split a whole board into regions. A FloodFill is not safe to share
+ * between threads.
+ *
+ * @author Ben Lloyd
+ */
+public class FloodFill {
+
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final int[] nodes;
+    private final int[] visited;
+    private int generation;
+    private int size;
+    private int liberties;
+    private int borderColours;
+
+    /**
+     * Constructs a flood fill for a graph.
+     *
+     * @param graph The graph to fill.
+     */
+    public FloodFill(FrozenGraph graph) {
+        offsets = graph.getOffsets();
+        neighbours = graph.getNeighbours();
+        nodes = new int[graph.size()];
+        visited = new int[graph.size()];
+        generation = 1;
+    }
+
+    /**
+     * Forget which nodes have been visited.
+     */
+    public void clear() {
+        if (++generation == 0) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Check whether a node has been visited since the last clear().
+     *
+     * @param id The node's id.
+     * @return True if the node is in a region that has been filled.
+     */
+    public boolean isVisited(int id) {
+        return visited[id] == generation;
+    }
+
+    /**
+     * Fill the region containing a node: the nodes of the same colour, or
+     * the empty nodes, connected to it. Nodes that have already been visited
+     * are skipped.
+     *
+     * @param position The stones on the board.
+     * @param start The id of the node to start from.
+     * @return The number of nodes in the region.
+     */
+    public int fill(Position position, int start) {
+        size = 0;
+        liberties = 0;
+        borderColours = 0;
+        if (isVisited(start)) {
+            return 0;
+        }
+
+        int colour = position.getColour(start);
+        boolean empty = colour == GameState.EMPTY;
+        visited[start] = generation;
+        nodes[size++] = start;
+        for (int head = 0; head < size; head++) {
+            int id = nodes[head];
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                int adj = neighbours[i];
+                boolean same;
+                if (position.isEmpty(adj)) {
+                    liberties++;
+                    same = empty;
+                } else {
+                    same = !empty && position.hasColour(adj, colour);
+                    if (!same) {
+                        borderColours |= 1 << position.getColour(adj);
+                    }
+                }
+                if (same && visited[adj] != generation) {
+                    visited[adj] = generation;
+                    nodes[size++] = adj;
+                }
+            }
+        }
+        if (empty) {
+            liberties = 0;
+        }
+        return size;
+    }
+
+    /**
+     * Get the nodes of the last region filled.
+     *
+     * @return A buffer whose first fill() entries are the region's node ids.
+     * It is reused by the next fill and must not be modified.
+     */
+    public int[] getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the liberty count of the last region filled if it was a chain,
+     * counting an empty node once for every stone of the chain it is adjacent
+     * to.
+     *
+     * @return The liberty count, or 0 for an empty region.
+     */
+    public int getLiberties() {
+        return liberties;
+    }
+
+    /**
+     * Get the colours of the stones adjacent to the last region filled, not
+     * counting the region's own colour.
+     *
+     * @return A bit mask with bit c set if colour c is adjacent.
+     */
+    public int getBorderColours() {
+        return borderColours;
+    }
+
+}
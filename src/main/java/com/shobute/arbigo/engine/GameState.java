@@ -0,0 +1,330 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.FrozenGraph;
+import com.shobute.arbigo.common.Node;
+
+/**
+ * The position of a game, independent of any user interface. Nodes are
+ * referred to by dense integer ids so that the rules can work on plain
+ * arrays.
+ *
+ * Stones of the same colour that are connected form a chain. Every stone
+ * knows the head of its chain and the next stone in a circular list of the
+ * chain's members, and the head keeps the chain's size and liberty count.
+ * Chains are merged when a stone joins them, relabelling the smaller one, so
+ * a move only costs the degree of its node plus the size of any merge.
+ *
+ * @author Ben Lloyd
+ */
+public class GameState {
+
+    /**
+     * The colour of a node without a stone.
+     */
+    public static final int EMPTY = -1;
+
+    private final FrozenGraph graph;
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final Position position;
+    private int stones;
+    private long hash;
+
+    private final int[] chain;
+    private final int[] next;
+    private final int[] sizes;
+    private final int[] liberties;
+
+    private final FloodFill fill;
+
+    /**
+     * Constructs an empty position on a graph.
+     *
+     * @param graph The graph to play on.
+     */
+    public GameState(FrozenGraph graph) {
+        this.graph = graph;
+        offsets = graph.getOffsets();
+        neighbours = graph.getNeighbours();
+
+        int n = graph.size();
+        position = new Position(n);
+
+        chain = new int[n];
+        next = new int[n];
+        sizes = new int[n];
+        liberties = new int[n];
+        fill = new FloodFill(graph);
+    }
+
+    /**
+     * Get the graph being played on.
+     *
+     * @return The frozen graph.
+     */
+    public FrozenGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Get the number of nodes on the board.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return position.size();
+    }
+
+    /**
+     * Get the id of a node.
+     *
+     * @param node The node to look up.
+     * @return The node's id, or -1 if the node is not on this board.
+     */
+    public int getId(Node node) {
+        return graph.getId(node);
+    }
+
+    /**
+     * Get the node with a particular id.
+     *
+     * @param id The node's id.
+     * @return The node.
+     */
+    public Node getNode(int id) {
+        return graph.getNode(id);
+    }
+
+    /**
+     * Get the colour of the stone on a node.
+     *
+     * @param id The node's id.
+     * @return The colour index, or EMPTY if there is no stone.
+     */
+    public int getColour(int id) {
+        return position.getColour(id);
+    }
+
+    /**
+     * Check whether a node has no stone on it.
+     *
+     * @param id The node's id.
+     * @return True if the node is empty, false otherwise.
+     */
+    public boolean isEmpty(int id) {
+        return position.isEmpty(id);
+    }
+
+    /**
+     * Get the number of stones on the board.
+     *
+     * @return The number of stones.
+     */
+    public int getStoneCount() {
+        return stones;
+    }
+
+    /**
+     * Get the Zobrist hash of the position.
+     *
+     * @return A 64-bit hash, which is 0 for the empty board.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the stones on the board. The position is updated as moves are
+     * played and must not be modified.
+     *
+     * @return The current position.
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Copy the stones on the board.
+     *
+     * @return A new position.
+     */
+    public Position snapshot() {
+        return new Position(position);
+    }
+
+    /**
+     * Get the chain a stone belongs to.
+     *
+     * @param id The node's id.
+     * @return The id of the head of the chain, or -1 if the node is empty.
+     */
+    public int getChain(int id) {
+        return position.isEmpty(id) ? -1 : chain[id];
+    }
+
+    /**
+     * Get the next stone in the same chain. Following this from any stone
+     * visits every stone in the chain once before returning to the start.
+     *
+     * @param id The id of a node with a stone on it.
+     * @return The id of the next stone.
+     */
+    public int getNextInChain(int id) {
+        return next[id];
+    }
+
+    /**
+     * Get the number of stones in a stone's chain.
+     *
+     * @param id The id of a node with a stone on it.
+     * @return The size of the chain.
+     */
+    public int getChainSize(int id) {
+        return sizes[chain[id]];
+    }
+
+    /**
+     * Get the liberty count of a stone's chain. An empty node is counted once
+     * for every stone of the chain it is adjacent to, so the count is zero
+     * exactly when the chain has no liberties.
+     *
+     * @param id The id of a node with a stone on it.
+     * @return The chain's liberty count.
+     */
+    public int getLiberties(int id) {
+        return liberties[chain[id]];
+    }
+
+    /*
+     * Places a stone, taking a liberty from every adjacent chain and merging
+     * it with the chains of its own colour.
+     */
+    void place(int id, int colour) {
+        set(id, colour);
+        chain[id] = id;
+        next[id] = id;
+        sizes[id] = 1;
+        liberties[id] = 0;
+
+        int end = offsets[id + 1];
+        for (int i = offsets[id]; i < end; i++) {
+            int adj = neighbours[i];
+            if (position.isEmpty(adj)) {
+                liberties[id]++;
+            } else {
+                liberties[chain[adj]]--;
+            }
+        }
+
+        for (int i = offsets[id]; i < end; i++) {
+            int adj = neighbours[i];
+            if (position.hasColour(adj, colour) && chain[adj] != chain[id]) {
+                merge(chain[adj], chain[id]);
+            }
+        }
+    }
+
+    /*
+     * Removes a stone, giving a liberty to every adjacent chain. Used for
+     * captures, where the stone's own chain is removed along with it.
+     */
+    void remove(int id) {
+        set(id, EMPTY);
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            int adj = neighbours[i];
+            if (!position.isEmpty(adj)) {
+                liberties[chain[adj]]++;
+            }
+        }
+    }
+
+    /*
+     * Sets a node's colour without updating any chains. Callers must rebuild
+     * the chains around the node afterwards.
+     */
+    void set(int id, int colour) {
+        int old = position.getColour(id);
+        if (old == EMPTY) {
+            stones++;
+        } else {
+            hash ^= Zobrist.key(id, old);
+        }
+        if (colour == EMPTY) {
+            stones--;
+        } else {
+            hash ^= Zobrist.key(id, colour);
+        }
+        position.set(id, colour);
+    }
+
+    /*
+     * Starts a new round of rebuild() calls. A chain is only rebuilt once per
+     * round however many of its stones are passed in.
+     */
+    void beginRebuild() {
+        fill.clear();
+    }
+
+    /*
+     * Recomputes the membership, size and liberties of the chain containing a
+     * node, if it has a stone on it.
+     */
+    void rebuild(int start) {
+        if (position.isEmpty(start) || fill.isVisited(start)) {
+            return;
+        }
+
+        int size = fill.fill(position, start);
+        int[] members = fill.getNodes();
+        for (int i = 0; i < size; i++) {
+            chain[members[i]] = start;
+            next[members[i]] = members[(i + 1) % size];
+        }
+        sizes[start] = size;
+        liberties[start] = fill.getLiberties();
+    }
+
+    private void merge(int a, int b) {
+        if (sizes[a] < sizes[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+
+        int id = b;
+        do {
+            chain[id] = a;
+            id = next[id];
+        } while (id != b);
+
+        int swap = next[a];
+        next[a] = next[b];
+        next[b] = swap;
+        sizes[a] += sizes[b];
+        liberties[a] += liberties[b];
+    }
+
+}
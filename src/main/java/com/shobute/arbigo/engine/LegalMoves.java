@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The legal moves in the current position of a RulesEngine, kept up to date
+ * as moves are played and undone.
+ *
+ * Most moves neither capture nor commit suicide, and the position such a move
+ * leads to is the current one plus a single stone. It can only repeat an
+ * earlier position with one more stone than the current one, and the Zobrist
+ * hashes identify the node directly. Every other move is on a node with no
+ * empty neighbours or on the last liberty of an adjacent chain. These
+ * tactical nodes are tracked incrementally and checked with the rules
+ * engine.
+ *
+ * @author Ben Lloyd
+ */
+public class LegalMoves {
+
+    private final RulesEngine engine;
+    private final GameState state;
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final int maxDegree;
+
+    private final long[] tactical;
+    private final long[] illegal;
+    private int illegalCount;
+    private int version;
+    private int illegalVersion;
+    private int illegalColour;
+
+    // Scratch space for update().
+    private final int[] evaluated;
+    private final int[] walked;
+    private int mark;
+
+    LegalMoves(RulesEngine engine) {
+        this.engine = engine;
+        this.state = engine.getState();
+        offsets = state.getGraph().getOffsets();
+        neighbours = state.getGraph().getNeighbours();
+        maxDegree = state.getGraph().getMaxDegree();
+
+        int n = state.size();
+        tactical = new long[Position.words(n)];
+        illegal = new long[Position.words(n)];
+        evaluated = new int[n];
+        walked = new int[n];
+        illegalVersion = -1;
+
+        for (int id = 0; id < n; id++) {
+            evaluate(id);
+        }
+    }
+
+    /**
+     * Check whether a stone may be placed on a node.
+     *
+     * @param node The node's id.
+     * @param colour The colour of the stone.
+     * @return True if the move is legal, false otherwise.
+     */
+    public boolean contains(int node, int colour) {
+        if (node < 0 || node >= state.size() || !state.isEmpty(node)) {
+            return false;
+        }
+        findIllegal(colour);
+        return !get(illegal, node);
+    }
+
+    /**
+     * Get the number of legal moves.
+     *
+     * @param colour The colour of the stone to be placed.
+     * @return The number of legal moves.
+     */
+    public int count(int colour) {
+        findIllegal(colour);
+        return state.size() - state.getStoneCount() - illegalCount;
+    }
+
+    /**
+     * Find the next legal move, for iterating over them in order of node id.
+     *
+     * @param from The node id to start looking from, inclusive.
+     * @param colour The colour of the stone to be placed.
+     * @return The id of the next legal node, or -1 if there are no more.
+     */
+    public int next(int from, int colour) {
+        findIllegal(colour);
+        from = Math.max(from, 0);
+        long[] occupied = state.getPosition().getOccupied();
+        for (int word = from >>> 6; word < occupied.length; word++) {
+            long bits = ~(occupied[word] | illegal[word]);
+            if (word == from >>> 6) {
+                bits &= -1L << from;
+            }
+            if (bits != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return id < state.size() ? id : -1;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Refreshes the tactical nodes that a move, or the undoing of a move,
+     * may have changed: every node next to a placed or removed stone, and
+     * every liberty of a chain that gained or lost stones or liberties.
+     *
+     * A node is only the last liberty of a chain if the chain's liberty count
+     * is at most the node's degree, so chains with more liberties than that
+     * are not walked. Their old liberties may stay marked as tactical, which
+     * only costs an extra check.
+     */
+    void update(Move move) {
+        version++;
+        if (++mark == 0) {
+            Arrays.fill(evaluated, 0);
+            Arrays.fill(walked, 0);
+            mark = 1;
+        }
+
+        touch(move.getNode());
+        for (int id : move.getCaptured()) {
+            touch(id);
+        }
+    }
+
+    private void touch(int id) {
+        refresh(id);
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            int adj = neighbours[i];
+            refresh(adj);
+            if (!state.isEmpty(adj)) {
+                refreshChain(adj);
+            }
+        }
+        if (!state.isEmpty(id)) {
+            refreshChain(id);
+        }
+    }
+
+    private void refreshChain(int start) {
+        int head = state.getChain(start);
+        if (walked[head] == mark || state.getLiberties(head) > maxDegree) {
+            return;
+        }
+        walked[head] = mark;
+
+        int id = start;
+        do {
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                refresh(neighbours[i]);
+            }
+            id = state.getNextInChain(id);
+        } while (id != start);
+    }
+
+    private void refresh(int id) {
+        if (evaluated[id] != mark) {
+            evaluated[id] = mark;
+            evaluate(id);
+        }
+    }
+
+    private void evaluate(int id) {
+        boolean result = false;
+        if (state.isEmpty(id)) {
+            result = true;
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                if (state.isEmpty(neighbours[i])) {
+                    result = false;
+                    break;
+                }
+            }
+            for (int i = offsets[id]; i < offsets[id + 1] && !result; i++) {
+                int adj = neighbours[i];
+                if (!state.isEmpty(adj)
+                        && state.getLiberties(adj) == adjacentStones(id, adj)) {
+                    result = true; // The chain's only liberty is this node.
+                }
+            }
+        }
+
+        if (result) {
+            tactical[id >>> 6] |= 1L << id;
+        } else {
+            tactical[id >>> 6] &= ~(1L << id);
+        }
+    }
+
+    // Counts the stones next to a node that are in the same chain as `stone`.
+    private int adjacentStones(int id, int stone) {
+        int head = state.getChain(stone);
+        int count = 0;
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            if (state.getChain(neighbours[i]) == head) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void findIllegal(int colour) {
+        if (illegalVersion == version && illegalColour == colour) {
+            return;
+        }
+        illegalVersion = version;
+        illegalColour = colour;
+        Arrays.fill(illegal, 0);
+        illegalCount = 0;
+
+        long[] occupied = state.getPosition().getOccupied();
+        for (int word = 0; word < tactical.length; word++) {
+            long bits = tactical[word] & ~occupied[word];
+            while (bits != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (!engine.isLegal(id, colour)) {
+                    setIllegal(id);
+                }
+            }
+        }
+
+        // A quiet move adds one stone, so it can only repeat a position with
+        // one more stone than this one.
+        long hash = state.getHash();
+        List<Long> hashes = engine.getSeenHashes(state.getStoneCount() + 1);
+        for (Long seen : hashes) {
+            int id = Zobrist.node(hash ^ seen, colour);
+            if (id >= 0 && id < state.size() && state.isEmpty(id)
+                    && !get(tactical, id) && !get(illegal, id)
+                    && !engine.isLegal(id, colour)) {
+                setIllegal(id);
+            }
+        }
+    }
+
+    private void setIllegal(int id) {
+        illegal[id >>> 6] |= 1L << id;
+        illegalCount++;
+    }
+
+    private static boolean get(long[] bits, int id) {
+        return (bits[id >>> 6] & (1L << id)) != 0;
+    }
+
+}
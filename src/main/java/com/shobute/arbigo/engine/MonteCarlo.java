@@ -0,0 +1,397 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.FrozenGraph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Chooses moves by Monte Carlo tree search, using UCT to pick which moves to
+ * explore. It needs nothing but the graph, so works on any board.
+ * <p>
+ * Each playout places random legal stones, never filling a player's own
+ * single-node eye, until every player has had to pass. The final position
+ * is scored by area and the players with the highest score share the win.
+ * With more than two players every tree node keeps the wins of the player
+ * whose move led to it.
+ * <p>
+ * The game is copied when the search is made, so the search itself can run
+ * on any thread while the game goes on.
+ *
+ * @author Ben Lloyd
+ */
+public class MonteCarlo {
+
+    /**
+     * The move returned when there is no legal move.
+     */
+    public static final int PASS = -1;
+
+    private static final double EXPLORATION = 1.0;
+
+    private final FrozenGraph graph;
+    private final int[] moveNodes;
+    private final int[] moveColours;
+    private final int[] colours;
+    private final int toMove;
+    private final Random random;
+
+    private RulesEngine engine;
+    private LegalMoves legal;
+    private Score score;
+    private int[] offsets;
+    private int[] neighbours;
+    private int[] candidates;
+    private double[] rewards;
+
+    /**
+     * Copy a game to search from. Call this on the thread the game is played
+     * on.
+     *
+     * @param game The game, with the moves played so far.
+     * @param colours The colours still playing, in turn order.
+     * @param toMove The index in colours of the player to move.
+     */
+    public MonteCarlo(RulesEngine game, int[] colours, int toMove) {
+        this(game, colours, toMove, new Random());
+    }
+
+    MonteCarlo(RulesEngine game, int[] colours, int toMove, Random random) {
+        graph = game.getState().getGraph();
+        int plies = game.getMoveCount();
+        moveNodes = new int[plies];
+        moveColours = new int[plies];
+        for (int ply = 0; ply < plies; ply++) {
+            moveNodes[ply] = game.getMove(ply).getNode();
+            moveColours[ply] = game.getMove(ply).getColour();
+        }
+        this.colours = colours.clone();
+        this.toMove = toMove;
+        this.random = random;
+    }
+
+    /**
+     * The outcome of a search.
+     */
+    public static final class Result {
+
+        private final int move;
+        private final double winRate;
+        private final int playouts;
+        private final long nanos;
+
+        Result(int move, double winRate, int playouts, long nanos) {
+            this.move = move;
+            this.winRate = winRate;
+            this.playouts = playouts;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The node id to play on, or PASS if there is no legal move.
+         */
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * @return The share of playouts through the move that the player
+         * won, between 0 and 1.
+         */
+        public double getWinRate() {
+            return winRate;
+        }
+
+        /**
+         * @return The number of playouts made.
+         */
+        public int getPlayouts() {
+            return playouts;
+        }
+
+        /**
+         * @return The number of playouts made per second of searching.
+         */
+        public double getPlayoutsPerSecond() {
+            return nanos == 0 ? 0 : playouts * 1e9 / nanos;
+        }
+
+    }
+
+    /*
+     * A move in the search tree, with the statistics of the playouts made
+     * through it.
+     */
+    private static final class Branch {
+
+        final int move;
+        final int mover;
+        final Branch parent;
+        final List<Branch> children = new ArrayList<>();
+        int[] untried;
+        int untriedCount;
+        int visits;
+        double wins;
+
+        Branch(int move, int mover, Branch parent) {
+            this.move = move;
+            this.mover = mover;
+            this.parent = parent;
+        }
+
+    }
+
+    /**
+     * Search for a move until a time budget runs out or the thread is
+     * interrupted.
+     *
+     * @param millis The time budget, in milliseconds.
+     * @return The move found and the statistics of the search.
+     */
+    public Result search(long millis) {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1000000;
+        setUp();
+        int root = engine.getMoveCount();
+
+        Branch tree = new Branch(PASS, -1, null);
+        expand(tree, toMove);
+        if (tree.untriedCount == 1 && tree.untried[0] == PASS) {
+            return lastResort();
+        }
+
+        int playouts = 0;
+        do {
+            playout(tree);
+            engine.jumpTo(root);
+            playouts++;
+        } while (System.nanoTime() < deadline
+                && !Thread.currentThread().isInterrupted());
+
+        Branch best = null;
+        for (Branch child : tree.children) {
+            if (best == null || child.visits > best.visits) {
+                best = child;
+            }
+        }
+        if (best == null) {
+            return lastResort();
+        }
+        return new Result(best.move, best.wins / best.visits, playouts,
+                System.nanoTime() - start);
+    }
+
+    /*
+     * The game has no passing, so with nothing better to do a player has to
+     * fill one of their own eyes, if they can move at all.
+     */
+    private Result lastResort() {
+        return new Result(legal.next(0, colours[toMove]), 0, 0, 0);
+    }
+
+    private void setUp() {
+        engine = new RulesEngine(graph);
+        for (int ply = 0; ply < moveNodes.length; ply++) {
+            if (!engine.play(moveNodes[ply], moveColours[ply])) {
+                throw new IllegalStateException("Move " + ply + " is illegal");
+            }
+        }
+        legal = engine.getLegalMoves();
+        score = new Score(engine.getState());
+        offsets = graph.getOffsets();
+        neighbours = graph.getNeighbours();
+        candidates = new int[graph.size()];
+        rewards = new double[colours.length];
+    }
+
+    /*
+     * Descend the tree by UCT, add one new move, play the rest of the game
+     * at random and credit the result to every move on the way.
+     */
+    private void playout(Branch tree) {
+        Branch branch = tree;
+        int turn = toMove;
+        int passes = 0;
+        while (passes < colours.length) {
+            if (branch.untried == null) {
+                expand(branch, turn);
+            }
+            if (branch.untriedCount > 0) {
+                int i = random.nextInt(branch.untriedCount);
+                int move = branch.untried[i];
+                branch.untried[i] = branch.untried[--branch.untriedCount];
+                if (!place(move, turn)) {
+                    continue;
+                }
+                Branch child = new Branch(move, turn, branch);
+                branch.children.add(child);
+                branch = child;
+                passes = move == PASS ? passes + 1 : 0;
+                turn = (turn + 1) % colours.length;
+                break;
+            }
+            if (branch.children.isEmpty()) {
+                break;
+            }
+            branch = select(branch);
+            place(branch.move, turn);
+            passes = branch.move == PASS ? passes + 1 : 0;
+            turn = (turn + 1) % colours.length;
+        }
+
+        int limit = 3 * graph.size();
+        while (passes < colours.length && limit-- > 0) {
+            passes = randomMove(turn) ? 0 : passes + 1;
+            turn = (turn + 1) % colours.length;
+        }
+
+        reward();
+        for (; branch != null; branch = branch.parent) {
+            branch.visits++;
+            if (branch.mover >= 0) {
+                branch.wins += rewards[branch.mover];
+            }
+        }
+    }
+
+    private boolean place(int move, int turn) {
+        return move == PASS || engine.play(move, colours[turn]);
+    }
+
+    private Branch select(Branch branch) {
+        double log = Math.log(branch.visits);
+        Branch best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (Branch child : branch.children) {
+            double value = child.wins / child.visits
+                    + EXPLORATION * Math.sqrt(log / child.visits);
+            if (value > bestValue) {
+                best = child;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /*
+     * Find the moves worth trying from a position, which are the legal
+     * moves outside the player's own eyes, or a pass if there are none.
+     */
+    private void expand(Branch branch, int turn) {
+        int colour = colours[turn];
+        int count = 0;
+        for (int id = legal.next(0, colour); id >= 0;
+                id = legal.next(id + 1, colour)) {
+            if (!isEye(id, colour)) {
+                candidates[count++] = id;
+            }
+        }
+        if (count == 0) {
+            candidates[count++] = PASS;
+        }
+        branch.untried = Arrays.copyOf(candidates, count);
+        branch.untriedCount = count;
+    }
+
+    /*
+     * Play a random legal move outside the player's own eyes, starting the
+     * scan at a random node. Empty nodes are tried with play() rather than
+     * LegalMoves, whose cache would be rebuilt for every change of colour.
+     *
+     * @return False if the player has to pass.
+     */
+    private boolean randomMove(int turn) {
+        int colour = colours[turn];
+        int start = random.nextInt(graph.size());
+        int id = nextEmpty(start);
+        boolean wrapped = false;
+        if (id < 0) {
+            wrapped = true;
+            id = nextEmpty(0);
+        }
+        while (id >= 0) {
+            if (!isEye(id, colour) && engine.play(id, colour)) {
+                return true;
+            }
+            id = nextEmpty(id + 1);
+            if (id < 0 && !wrapped) {
+                wrapped = true;
+                id = nextEmpty(0);
+            }
+            if (wrapped && id >= start) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private int nextEmpty(int from) {
+        long[] occupied = engine.getState().getPosition().getOccupied();
+        for (int word = from >>> 6; word < occupied.length; word++) {
+            long bits = ~occupied[word];
+            if (word == from >>> 6) {
+                bits &= -1L << from;
+            }
+            if (bits != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return id < graph.size() ? id : -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isEye(int id, int colour) {
+        GameState state = engine.getState();
+        if (offsets[id] == offsets[id + 1]) {
+            return false;
+        }
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            if (state.getColour(neighbours[i]) != colour) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reward() {
+        int[] scores = score.compute();
+        int best = Integer.MIN_VALUE;
+        int winners = 0;
+        for (int colour : colours) {
+            if (scores[colour] > best) {
+                best = scores[colour];
+                winners = 1;
+            } else if (scores[colour] == best) {
+                winners++;
+            }
+        }
+        for (int i = 0; i < colours.length; i++) {
+            rewards[i] = scores[colours[i]] == best ? 1.0 / winners : 0;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+/**
+ * A stone placed on the board, along with the stones it captured.
+ *
+ * @author Ben Lloyd
+ */
+public class Move {
+
+    private final int node;
+    private final int colour;
+    private final int[] captured;
+    private final int[] capturedColours;
+    private final long hash;
+
+    Move(int node, int colour, int[] captured, int[] capturedColours,
+            long hash) {
+        this.node = node;
+        this.colour = colour;
+        this.captured = captured;
+        this.capturedColours = capturedColours;
+        this.hash = hash;
+    }
+
+    /**
+     * Get the id of the node the stone was placed on.
+     *
+     * @return A node id.
+     */
+    public int getNode() {
+        return node;
+    }
+
+    /**
+     * Get the colour of the placed stone.
+     *
+     * @return A colour index.
+     */
+    public int getColour() {
+        return colour;
+    }
+
+    /**
+     * Get the ids of the nodes whose stones were removed by this move. This
+     * may include the placed stone itself if the move was a suicide.
+     *
+     * @return The node ids. The array must not be modified.
+     */
+    public int[] getCaptured() {
+        return captured;
+    }
+
+    /**
+     * Get the colours of the removed stones, in the same order as
+     * getCaptured().
+     *
+     * @return The colour indexes. The array must not be modified.
+     */
+    public int[] getCapturedColours() {
+        return capturedColours;
+    }
+
+    /**
+     * Get the Zobrist hash of the position after this move.
+     *
+     * @return A 64-bit hash.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+}
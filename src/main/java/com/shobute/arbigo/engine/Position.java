@@ -0,0 +1,296 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.Colour;
+import com.shobute.arbigo.common.FrozenGraph;
+import java.util.Arrays;
+
+/**
+ * The stones on a board, stored as one bitset per colour plus a bitset of
+ * occupied nodes, all indexed by node id. Copies and comparisons work a word
+ * (64 nodes) at a time.
+ *
+ * @author Ben Lloyd
+ */
+public final class Position {
+
+    private final int size;
+    private final long[] occupied;
+    private final long[][] stones;
+    private int colours;
+
+    /**
+     * Constructs an empty position.
+     *
+     * @param size The number of nodes on the board.
+     */
+    public Position(int size) {
+        this.size = size;
+        occupied = new long[words(size)];
+        stones = new long[Colour.colours.length][];
+    }
+
+    /**
+     * Constructs a copy of a position.
+     *
+     * @param other The position to copy.
+     */
+    public Position(Position other) {
+        this(other.size);
+        copyFrom(other);
+    }
+
+    /**
+     * Get the number of 64-bit words needed for a bitset over some nodes.
+     *
+     * @param size The number of nodes.
+     * @return The number of words.
+     */
+    public static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Get the number of nodes on the board.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether a node has no stone on it.
+     *
+     * @param id The node's id.
+     * @return True if the node is empty, false otherwise.
+     */
+    public boolean isEmpty(int id) {
+        return (occupied[id >>> 6] & (1L << id)) == 0;
+    }
+
+    /**
+     * Check whether a node has a stone of a particular colour on it.
+     *
+     * @param id The node's id.
+     * @param colour The colour index.
+     * @return True if the node has a stone of that colour, false otherwise.
+     */
+    public boolean hasColour(int id, int colour) {
+        long[] bits = stones[colour];
+        return bits != null && (bits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Get the colour of the stone on a node.
+     *
+     * @param id The node's id.
+     * @return The colour index, or GameState.EMPTY if there is no stone.
+     */
+    public int getColour(int id) {
+        if (isEmpty(id)) {
+            return GameState.EMPTY;
+        }
+        for (int colour = 0; colour < colours; colour++) {
+            if (hasColour(id, colour)) {
+                return colour;
+            }
+        }
+        return GameState.EMPTY;
+    }
+
+    /**
+     * Set the colour of the stone on a node.
+     *
+     * @param id The node's id.
+     * @param colour The colour index, or GameState.EMPTY to remove the stone.
+     */
+    public void set(int id, int colour) {
+        int word = id >>> 6;
+        long bit = 1L << id;
+        if ((occupied[word] & bit) != 0) {
+            stones[getColour(id)][word] &= ~bit;
+        }
+        if (colour == GameState.EMPTY) {
+            occupied[word] &= ~bit;
+        } else {
+            occupied[word] |= bit;
+            getStones(colour)[word] |= bit;
+        }
+    }
+
+    /**
+     * Get the number of stones on the board.
+     *
+     * @return The number of stones.
+     */
+    public int count() {
+        return count(occupied);
+    }
+
+    /**
+     * Get the number of stones of a colour.
+     *
+     * @param colour The colour index.
+     * @return The number of stones.
+     */
+    public int count(int colour) {
+        return stones[colour] == null ? 0 : count(stones[colour]);
+    }
+
+    /**
+     * Get the bitset of occupied nodes. The array is shared and must not be
+     * modified.
+     *
+     * @return The occupied bitset.
+     */
+    public long[] getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * Get the bitset of stones of a colour. The array is shared and must not
+     * be modified.
+     *
+     * @param colour The colour index.
+     * @return The stones bitset.
+     */
+    public long[] getStones(int colour) {
+        if (stones[colour] == null) {
+            stones[colour] = new long[occupied.length];
+            colours = Math.max(colours, colour + 1);
+        }
+        return stones[colour];
+    }
+
+    /**
+     * Remove every stone in a set, such as a captured chain.
+     *
+     * @param set The bitset of nodes to clear.
+     */
+    public void removeAll(long[] set) {
+        for (int i = 0; i < occupied.length; i++) {
+            occupied[i] &= ~set[i];
+        }
+        for (int colour = 0; colour < colours; colour++) {
+            long[] bits = stones[colour];
+            if (bits != null) {
+                for (int i = 0; i < bits.length; i++) {
+                    bits[i] &= ~set[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the liberties of a set of nodes, i.e., the empty nodes adjacent to
+     * any of them.
+     *
+     * @param graph The graph the position is on.
+     * @param set The bitset of nodes, such as a chain.
+     * @param out The bitset to write the liberties to.
+     */
+    public void liberties(FrozenGraph graph, long[] set, long[] out) {
+        int[] offsets = graph.getOffsets();
+        int[] neighbours = graph.getNeighbours();
+        Arrays.fill(out, 0);
+        for (int word = 0; word < set.length; word++) {
+            long bits = set[word];
+            while (bits != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                    out[neighbours[i] >>> 6] |= 1L << neighbours[i];
+                }
+            }
+        }
+        for (int i = 0; i < out.length; i++) {
+            out[i] &= ~occupied[i];
+        }
+    }
+
+    /**
+     * Make this position the same as another.
+     *
+     * @param other The position to copy, on a board of the same size.
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.occupied, 0, occupied, 0, occupied.length);
+        for (int colour = 0; colour < stones.length; colour++) {
+            if (other.stones[colour] != null) {
+                System.arraycopy(other.stones[colour], 0, getStones(colour), 0,
+                        occupied.length);
+            } else if (stones[colour] != null) {
+                Arrays.fill(stones[colour], 0);
+            }
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Arrays.hashCode(occupied);
+        for (int colour = 0; colour < colours; colour++) {
+            if (stones[colour] != null && count(stones[colour]) > 0) {
+                hash = 31 * hash + Arrays.hashCode(stones[colour]) + colour;
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final Position other = (Position) obj;
+        if (size != other.size || !Arrays.equals(occupied, other.occupied)) {
+            return false;
+        }
+        for (int colour = 0; colour < stones.length; colour++) {
+            if (!isZeroOrEqual(stones[colour], other.stones[colour])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZeroOrEqual(long[] a, long[] b) {
+        if (a == null || b == null) {
+            long[] bits = a == null ? b : a;
+            return bits == null || count(bits) == 0;
+        }
+        return Arrays.equals(a, b);
+    }
+
+    private static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+}
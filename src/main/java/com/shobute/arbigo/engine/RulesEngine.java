@@ -0,0 +1,416 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.FrozenGraph;
+import com.shobute.arbigo.common.Graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies, validates and undoes moves on a GameState. An engine keeps scratch
+ * space between calls so it is not safe to share between threads.
+ *
+ * The history of a game is the list of moves played, each recording only the
+ * stone placed and the stones it captured. Undoing, redoing and jumping to a
+ * move replay these deltas rather than storing whole positions.
+ *
+ * @author Ben Lloyd
+ */
+public class RulesEngine {
+
+    private final GameState state;
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final List<Move> moves;
+    private final List<Move> undone;
+    private final Map<Long, Integer> seen;
+    private final Map<Integer, List<Long>> seenByStones;
+    private final LegalMoves legalMoves;
+
+    // Scratch space, reused by every call.
+    private final int[] touched;
+    private final int[] captured;
+    private final int[] capturedColours;
+    private final int[] marks;
+    private int mark;
+    private final int[] past;
+
+    /**
+     * Constructs an engine for a new game on a graph.
+     *
+     * @param graph The graph to play on.
+     */
+    public RulesEngine(Graph graph) {
+        this(graph.freeze());
+    }
+
+    /**
+     * Constructs an engine for a new game on a frozen graph, which may be
+     * shared with other games.
+     *
+     * @param graph The graph to play on.
+     */
+    public RulesEngine(FrozenGraph graph) {
+        state = new GameState(graph);
+        offsets = graph.getOffsets();
+        neighbours = graph.getNeighbours();
+        moves = new ArrayList<>();
+        undone = new ArrayList<>();
+        seen = new HashMap<>();
+        seenByStones = new HashMap<>();
+        see(state.getHash());
+
+        int n = state.size();
+        touched = new int[n];
+        captured = new int[n];
+        capturedColours = new int[n];
+        marks = new int[n];
+        past = new int[n];
+        legalMoves = new LegalMoves(this);
+    }
+
+    /**
+     * Get the current position.
+     *
+     * @return The game state.
+     */
+    public GameState getState() {
+        return state;
+    }
+
+    /**
+     * Get the legal moves in the current position.
+     *
+     * @return The legal moves, which are kept up to date as the game goes on.
+     */
+    public LegalMoves getLegalMoves() {
+        return legalMoves;
+    }
+
+    /**
+     * Get the number of moves played so far.
+     *
+     * @return The number of moves.
+     */
+    public int getMoveCount() {
+        return moves.size();
+    }
+
+    /**
+     * Get a move that has been played.
+     *
+     * @param ply The number of moves before it.
+     * @return The move.
+     */
+    public Move getMove(int ply) {
+        return moves.get(ply);
+    }
+
+    /**
+     * Get the number of moves that have been undone and can be redone.
+     *
+     * @return The number of moves.
+     */
+    public int getRedoCount() {
+        return undone.size();
+    }
+
+    /**
+     * Get the most recent move.
+     *
+     * @return The last move, or null if no moves have been played.
+     */
+    public Move getLastMove() {
+        return moves.isEmpty() ? null : moves.get(moves.size() - 1);
+    }
+
+    /**
+     * Check whether a stone may be placed on a node. The position is left
+     * unchanged.
+     *
+     * @param node The node's id.
+     * @param colour The colour of the stone.
+     * @return True if the move is legal, false otherwise.
+     */
+    public boolean isLegal(int node, int colour) {
+        Move move = apply(node, colour);
+        if (move == null) {
+            return false;
+        }
+        revert(move);
+        return true;
+    }
+
+    /**
+     * Place a stone on a node, removing any captured stones.
+     *
+     * @param node The node's id.
+     * @param colour The colour of the stone.
+     * @return True if the move was played, false if it is illegal.
+     */
+    public boolean play(int node, int colour) {
+        Move move = apply(node, colour);
+        if (move == null) {
+            return false;
+        }
+        undone.clear();
+        moves.add(move);
+        see(move.getHash());
+        legalMoves.update(move);
+        return true;
+    }
+
+    /**
+     * Take back the most recent move.
+     *
+     * @return True if a move was taken back, false if there were no moves.
+     */
+    public boolean undo() {
+        if (moves.isEmpty()) {
+            return false;
+        }
+        Move move = moves.remove(moves.size() - 1);
+        unsee(move.getHash());
+        revert(move);
+        legalMoves.update(move);
+        undone.add(move);
+        return true;
+    }
+
+    /**
+     * Play the most recently undone move again. Moves can only be redone
+     * until a new move is played.
+     *
+     * @return True if a move was replayed, false if there was none to redo.
+     */
+    public boolean redo() {
+        if (undone.isEmpty()) {
+            return false;
+        }
+        Move move = undone.remove(undone.size() - 1);
+        state.place(move.getNode(), move.getColour());
+        for (int id : move.getCaptured()) {
+            state.remove(id);
+        }
+        moves.add(move);
+        see(move.getHash());
+        legalMoves.update(move);
+        return true;
+    }
+
+    /**
+     * Undo or redo moves until a number of moves have been played.
+     *
+     * @param ply The number of moves, between 0 and getMoveCount() +
+     * getRedoCount().
+     * @return True if the position was reached, false if ply is out of range.
+     */
+    public boolean jumpTo(int ply) {
+        if (ply < 0 || ply > moves.size() + undone.size()) {
+            return false;
+        }
+        while (moves.size() > ply) {
+            undo();
+        }
+        while (moves.size() < ply) {
+            redo();
+        }
+        return true;
+    }
+
+    /*
+     * Gets the hashes of the earlier positions with a particular number of
+     * stones.
+     */
+    List<Long> getSeenHashes(int stones) {
+        List<Long> hashes = seenByStones.get(stones);
+        return hashes == null ? Collections.<Long>emptyList() : hashes;
+    }
+
+    private void see(long hash) {
+        Integer count = seen.get(hash);
+        seen.put(hash, count == null ? 1 : count + 1);
+
+        List<Long> hashes = seenByStones.get(state.getStoneCount());
+        if (hashes == null) {
+            hashes = new ArrayList<>();
+            seenByStones.put(state.getStoneCount(), hashes);
+        }
+        hashes.add(hash);
+    }
+
+    private void unsee(long hash) {
+        Integer count = seen.get(hash);
+        if (count == 1) {
+            seen.remove(hash);
+        } else {
+            seen.put(hash, count - 1);
+        }
+
+        List<Long> hashes = seenByStones.get(state.getStoneCount());
+        hashes.remove(hashes.size() - 1);
+        if (hashes.isEmpty()) {
+            seenByStones.remove(state.getStoneCount());
+        }
+    }
+
+    private Move apply(int node, int colour) {
+        if (node < 0 || node >= state.size() || !state.isEmpty(node)) {
+            return null;
+        }
+
+        state.place(node, colour);
+
+        int count = 0;
+        for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+            int adj = neighbours[i];
+            int adjColour = state.getColour(adj);
+            if (adjColour != GameState.EMPTY && adjColour != colour
+                    && state.getLiberties(adj) == 0) {
+                count = capture(adj, count);
+            }
+        }
+
+        // Suicide
+        if (state.getLiberties(node) == 0) {
+            count = capture(node, count);
+        }
+
+        Move move = new Move(node, colour, Arrays.copyOf(captured, count),
+                Arrays.copyOf(capturedColours, count), state.getHash());
+        if (repeats(move)) {
+            revert(move);
+            return null;
+        }
+        return move;
+    }
+
+    private void revert(Move move) {
+        int node = move.getNode();
+        int[] ids = move.getCaptured();
+        int[] colours = move.getCapturedColours();
+        for (int i = 0; i < ids.length; i++) {
+            state.set(ids[i], colours[i]);
+        }
+        state.set(node, GameState.EMPTY);
+
+        // Every chain that was merged, captured or lost a liberty touches
+        // either the placed stone or a captured one.
+        state.beginRebuild();
+        for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+            state.rebuild(neighbours[i]);
+        }
+        for (int id : ids) {
+            state.rebuild(id);
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                state.rebuild(neighbours[i]);
+            }
+        }
+    }
+
+    private boolean repeats(Move move) {
+        if (!seen.containsKey(move.getHash())) {
+            return false;
+        }
+
+        // The hashes match, so compare against each earlier position with the
+        // same hash in case of a collision.
+        if (state.getStoneCount() == 0) {
+            return true; // The empty board the game started with.
+        }
+        for (int ply = moves.size() - 1; ply >= 0; ply--) {
+            if (moves.get(ply).getHash() == move.getHash()
+                    && matchesPosition(move, ply + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Compares the current position, which includes the tentative move, with
+     * the position after `ply` moves. Only nodes touched by the moves since
+     * then can differ, so they are rewound into `past`.
+     */
+    private boolean matchesPosition(Move move, int ply) {
+        if (++mark == 0) {
+            Arrays.fill(marks, 0);
+            mark = 1;
+        }
+
+        int count = rewind(move, 0);
+        for (int i = moves.size() - 1; i >= ply; i--) {
+            count = rewind(moves.get(i), count);
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (past[touched[i]] != state.getColour(touched[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int rewind(Move move, int count) {
+        int[] ids = move.getCaptured();
+        int[] colours = move.getCapturedColours();
+        for (int i = 0; i < ids.length; i++) {
+            count = touch(ids[i], count);
+            past[ids[i]] = colours[i];
+        }
+        count = touch(move.getNode(), count);
+        past[move.getNode()] = GameState.EMPTY;
+        return count;
+    }
+
+    private int touch(int id, int count) {
+        if (marks[id] != mark) {
+            marks[id] = mark;
+            touched[count++] = id;
+        }
+        return count;
+    }
+
+    private int capture(int start, int count) {
+        int first = count;
+        int id = start;
+        do {
+            captured[count] = id;
+            capturedColours[count] = state.getColour(id);
+            count++;
+            id = state.getNextInChain(id);
+        } while (id != start);
+
+        for (int i = first; i < count; i++) {
+            state.remove(captured[i]);
+        }
+        return count;
+    }
+
+}
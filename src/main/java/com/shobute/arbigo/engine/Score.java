@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.Colour;
+
+/**
+ * Area scoring: every colour scores its stones plus the empty regions that
+ * only its stones border.
+ *
+ * @author Ben Lloyd
+ */
+public class Score {
+
+    private final GameState state;
+    private final FloodFill fill;
+    private final int[] scores;
+
+    /**
+     * Constructs a scorer for a game.
+     *
+     * @param state The position to score.
+     */
+    public Score(GameState state) {
+        this.state = state;
+        this.fill = new FloodFill(state.getGraph());
+        this.scores = new int[Colour.colours.length];
+    }
+
+    /**
+     * Score the current position.
+     *
+     * @return The score of each colour, indexed by colour. The array is
+     * reused by the next call.
+     */
+    public int[] compute() {
+        Position position = state.getPosition();
+        for (int colour = 0; colour < scores.length; colour++) {
+            scores[colour] = position.count(colour);
+        }
+
+        fill.clear();
+        for (int id = 0; id < state.size(); id++) {
+            if (position.isEmpty(id) && !fill.isVisited(id)) {
+                int size = fill.fill(position, id);
+                int border = fill.getBorderColours();
+                if (border != 0 && (border & (border - 1)) == 0) {
+                    scores[Integer.numberOfTrailingZeros(border)] += size;
+                }
+            }
+        }
+        return scores;
+    }
+
+}
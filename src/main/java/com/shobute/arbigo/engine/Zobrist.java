@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.Colour;
+
+/**
+ * Zobrist keys for hashing positions. The hash of a position is the XOR of
+ * the keys of every stone on the board, so it can be updated incrementally as
+ * stones are added and removed.
+ *
+ * Keys are derived from the node id and colour with a mixing function rather
+ * than looked up in a table, so boards of any size need no extra memory and
+ * every game on the same board agrees on the keys.
+ *
+ * @author Ben Lloyd
+ */
+public final class Zobrist {
+
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final long MIX1 = 0xBF58476D1CE4E5B9L;
+    private static final long MIX2 = 0x94D049BB133111EBL;
+    private static final long GOLDEN_INVERSE = inverse(GOLDEN);
+    private static final long MIX1_INVERSE = inverse(MIX1);
+    private static final long MIX2_INVERSE = inverse(MIX2);
+
+    private Zobrist() {
+    }
+
+    /**
+     * Get the key of a stone.
+     *
+     * @param node The id of the node the stone is on.
+     * @param colour The colour of the stone.
+     * @return A 64-bit key.
+     */
+    public static long key(int node, int colour) {
+        long z = SEED + ((long) node * Colour.colours.length + colour + 1)
+                * GOLDEN;
+        // SplitMix64 finalizer.
+        z = (z ^ (z >>> 30)) * MIX1;
+        z = (z ^ (z >>> 27)) * MIX2;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Find the node a key belongs to. The mixing function is a bijection, so
+     * this is exact: it is the inverse of key().
+     *
+     * @param key A 64-bit value, such as the XOR of two position hashes.
+     * @param colour The colour the key should belong to.
+     * @return The node id, or -1 if the value is not the key of a stone of
+     * that colour.
+     */
+    public static int node(long key, int colour) {
+        long z = key ^ (key >>> 31) ^ (key >>> 62);
+        z *= MIX2_INVERSE;
+        z ^= (z >>> 27) ^ (z >>> 54);
+        z *= MIX1_INVERSE;
+        z ^= (z >>> 30) ^ (z >>> 60);
+        long index = (z - SEED) * GOLDEN_INVERSE - 1;
+
+        int colours = Colour.colours.length;
+        if (index < 0 || index % colours != colour
+                || index / colours > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) (index / colours);
+    }
+
+    // Multiplicative inverse of an odd number modulo 2^64, by Newton's method.
+    private static long inverse(long a) {
+        long x = a;
+        for (int i = 0; i < 5; i++) {
+            x *= 2 - a * x;
+        }
+        return x;
+    }
+
+}
@@ -23,225 +23,252 @@
  */
 package com.shobute.arbigo.play;
 
+import com.shobute.arbigo.common.Colour;
 import com.shobute.arbigo.common.Stone;
+import com.shobute.arbigo.common.StoneSprites;
+import com.shobute.arbigo.common.Viewport;
 import com.shobute.arbigo.common.Graph;
 import com.shobute.arbigo.common.Node;
-import java.awt.Dimension;
+import com.shobute.arbigo.common.RenderStats;
+import com.shobute.arbigo.engine.GameState;
+import com.shobute.arbigo.engine.Move;
+import com.shobute.arbigo.engine.RulesEngine;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Point2D;
+import javax.swing.AbstractAction;
 import javax.swing.JPanel;
-import javax.swing.Timer;
+import javax.swing.KeyStroke;
 
 /**
  *
  * @author Ben Lloyd
  */
-public class Board extends JPanel implements ActionListener {
+public class Board extends JPanel {
+
+    private static final double ZOOM_STEP = 1.1;
 
     private Graph graph;
-    private final Timer timer;
-    private Node hoverNode, validHover;
-    private final ArrayList<HashMap<Node, Stone>> history;
-    private HashMap<Node, Stone> state;
-    private double scaleFactor;
+    private Node hoverNode;
+    private final RulesEngine engine;
+    private final BoardRenderer renderer;
+    private final RenderStats stats;
+    private boolean showStats;
+    private final Viewport viewport;
+    private boolean fitted;
     private FramePlay framePlay;
     private MouseAdapter listener;
 
     public Board(final FramePlay framePlay) {
         this.framePlay = framePlay;
         this.graph = framePlay.getGraph();
+        this.engine = framePlay.getEngine();
 
-        if (graph == null) {
-            graph = new Graph(9);
+        Stone[] stones = new Stone[Colour.colours.length];
+        for (int i = 0; i < stones.length; i++) {
+            stones[i] = new Stone(Colour.colours[i]);
         }
-
-        // Start with blank state in history (important that history.size() > 0).
-        state = new HashMap<>();
-        history = new ArrayList<>(100); // 100 moves will be common
-        history.add(state);
+        stats = new RenderStats("Board", "nodes", "edges", "stones", "blit",
+                "hover");
+        showStats = RenderStats.isShownByDefault();
+        renderer = new BoardRenderer(graph, engine.getState(), stones, stats);
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "toggleStats");
+        getActionMap().put("toggleStats", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                setShowStats(!showStats);
+            }
+        });
 
         this.listener = new MouseAdapter() {
             int radius = graph.getShortestRadius();
 
             @Override
             public void mouseClicked(MouseEvent me) {
-                Node node = graph.nodeAt(scalePoint(me.getPoint()), radius);
-                if (playMove(node)) {
-                    history.add(state);
-                    framePlay.nextTurn();
-                    validHover = null;
-                }
+                framePlay.play(graph.nodeAt(scalePoint(me.getPoint()), radius));
             }
 
             @Override
             public void mouseMoved(MouseEvent me) {
-                hoverNode = graph.nodeAt(scalePoint(me.getPoint()), radius);
+                Node node = graph.nodeAt(scalePoint(me.getPoint()), radius);
+                if (node != hoverNode) {
+                    repaintNode(hoverNode);
+                    hoverNode = node;
+                    repaintNode(hoverNode);
+                }
             }
         };
 
         addMouseListener(listener);
         addMouseMotionListener(listener);
 
-        scaleFactor = 1;
-        addComponentListener(new ComponentAdapter() {
-            private int r = graph.getShortestRadius();
-            private Dimension graphSize = graph.getSize();
+        viewport = new Viewport();
+        fitted = true;
+        MouseAdapter navigator = new MouseAdapter() {
+            private Point dragged;
 
             @Override
-            public void componentResized(ComponentEvent e) {
-                double cWidth = getSize().getWidth();
-                double cHeight = getSize().getHeight();
-                double gWidth = graphSize.getWidth();
-                double gHeight = graphSize.getHeight();
-                scaleFactor = Math.min(cWidth / (gWidth + 2 * r),
-                        cHeight / (gHeight + 2 * r));
+            public void mousePressed(MouseEvent me) {
+                dragged = me.getPoint();
             }
-        });
-
-        timer = new Timer(20, this);
-        timer.start();
-
-    }
-
-    private Point scalePoint(Point point) {
-        int r = graph.getShortestRadius();
-        Point origin = graph.getOrigin();
-        double newX = point.x / scaleFactor + origin.x - r;
-        double newY = point.y / scaleFactor + origin.y - r;
-        return new Point((int) newX, (int) newY);
-    }
 
-    private boolean playMove(Node node) {
-        state = (HashMap<Node, Stone>) history.get(history.size() - 1).clone();
-
-        if (node == null || state.containsKey(node)) {
-            return false;
-        }
-
-        state.put(node, framePlay.getStone());
-        removeCaptured(node);
-
-        for (HashMap<Node, Stone> prevState : history) {
-            if (state.equals(prevState)) {
-                return false;
+            @Override
+            public void mouseDragged(MouseEvent me) {
+                viewport.pan(me.getX() - dragged.x, me.getY() - dragged.y);
+                dragged = me.getPoint();
+                fitted = false;
+                repaint();
             }
-        }
-
-        return true;
-    }
 
-    private HashSet<Node> group(Node node, HashSet<Node> group) {
-        if (group.contains(node)) {
-            return null;
-        }
-        group.add(node);
-        Stone stone = state.get(node);
-        for (Node n : node.getAdjacentNodes()) {
-            if (stone != null && stone.equals(state.get(n))) {
-                group(n, group);
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent mwe) {
+                viewport.zoom(Math.pow(ZOOM_STEP, -mwe.getPreciseWheelRotation()),
+                        mwe.getPoint());
+                fitted = false;
+                repaint();
             }
-        }
-        return group;
-    }
+        };
+        addMouseListener(navigator);
+        addMouseMotionListener(navigator);
+        addMouseWheelListener(navigator);
 
-    private boolean surrounded(HashSet<Node> group) {
-        for (Node node : group) {
-            for (Node adjNode : node.getAdjacentNodes()) {
-                if (!state.containsKey(adjNode)) {
-                    return false;
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                StoneSprites.clear();
+                // Keep the user's zoom and pan, but otherwise show the whole
+                // board.
+                if (fitted) {
+                    viewport.fit(graph.getBounds(), graph.getShortestRadius(),
+                            getWidth(), getHeight());
                 }
             }
-        }
-        return true;
-    }
+        });
 
-    private void removeCaptured(Node playedNode) {
-        for (Node node : playedNode.getAdjacentNodes()) {
-            if (state.get(playedNode).equals(state.get(node))) {
-                continue;
-            }
-            HashSet<Node> group = group(node, new HashSet<Node>());
-            if (surrounded(group)) {
-                for (Node n : group) {
-                    state.remove(n);
-                }
-            }
-        }
+    }
 
-        // Suicide
-        HashSet<Node> group = group(playedNode, new HashSet<Node>());
-        if (surrounded(group)) {
-            for (Node n : group) {
-                state.remove(n);
-            }
-        }
+    private Point scalePoint(Point point) {
+        return viewport.toGraph(point);
     }
 
     private void paintHover(Graphics2D g2d) {
-        if (hoverNode != null && hoverNode == validHover || playMove(hoverNode)) {
-            // Set this so playMove() does not recompute unnecessarily.
-            validHover = hoverNode;
-            
+        int id = engine.getState().getId(hoverNode);
+        if (engine.getLegalMoves().contains(id,
+                framePlay.getPlayer().getColour())) {
             int r = graph.getShortestRadius();
-            framePlay.getStone().paint(g2d, hoverNode.x, hoverNode.y, r, 50);
-        }
-    }
-
-    public void paintStones(Graphics2D g2d) {
-        Stone stone;
-        for (Node node : history.get(history.size() - 1).keySet()) {
-            stone = history.get(history.size() - 1).get(node);
-            if (stone != null) {
-                int r = graph.getShortestRadius();
-                stone.paint(g2d, node.x, node.y, r, 220);
-            }
+            Point2D centre = viewport.toScreen(hoverNode);
+            framePlay.getStone().paintSprite(g2d, centre.getX(),
+                    centre.getY(), r, 50, viewport.getScale());
         }
     }
 
     @Override
     public void paint(Graphics g) {
+        stats.beginFrame();
         super.paint(g); // Clears the graphic.
         Graphics2D g2d = (Graphics2D) g;
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_ON);
 
-        graph.scale(g2d, scaleFactor);
-        graph.paintNodes(g2d);
-        graph.paintEdges(g2d);
-        paintStones(g2d);
+        renderer.paint(g2d, getWidth(), getHeight(), viewport);
 
         if (framePlay.isGameOver()) {
             g2d.setColor(framePlay.getColour());
-            // TODO: Do it like this, http://stackoverflow.com/a/2244285/3780738?
-            Point origin = graph.getOrigin();
-            int r = graph.getShortestRadius();
-            g2d.translate(origin.x, origin.y);
-            g2d.translate(-1 * r, -1 * r);
-            g2d.scale(1 / scaleFactor, 1 / scaleFactor);
             g2d.fillRect(0, 0, getWidth(), getHeight());
         } else {
             paintHover(g2d);
         }
+        stats.mark("hover");
+        stats.endFrame();
+        if (showStats) {
+            stats.paint(g2d);
+        }
+    }
+
+    /**
+     * Show or hide the rendering statistics over the board.
+     *
+     * @param show True to show them.
+     */
+    public void setShowStats(boolean show) {
+        showStats = show;
+        repaint();
     }
 
+    // While statistics are shown, every repaint also refreshes them.
     @Override
-    public void actionPerformed(ActionEvent ae) {
-        if (framePlay.isGameOver()) {
-            timer.stop();
-            removeMouseListener(listener);
+    public void repaint(long tm, int x, int y, int width, int height) {
+        super.repaint(tm, x, y, width, height);
+        if (showStats) {
+            Rectangle bounds = stats.getBounds();
+            super.repaint(tm, bounds.x, bounds.y, bounds.width, bounds.height);
         }
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        stats.register();
+    }
+
+    @Override
+    public void removeNotify() {
+        stats.unregister();
+        super.removeNotify();
+    }
+
+    /**
+     * Repaint the nodes a move changed, whether it was just played or just
+     * taken back.
+     *
+     * @param move The move.
+     */
+    public void repaintMove(Move move) {
+        GameState state = engine.getState();
+        repaintNode(state.getNode(move.getNode()));
+        for (int id : move.getCaptured()) {
+            repaintNode(state.getNode(id));
+        }
+        repaintHover();
+    }
+
+    /**
+     * Repaint the hover stone, for when the player to move has changed.
+     */
+    public void repaintHover() {
+        repaintNode(hoverNode);
+    }
+
+    /**
+     * Stop taking moves and cover the board in the winner's colour.
+     */
+    public void gameOver() {
+        removeMouseListener(listener);
+        removeMouseMotionListener(listener);
+        hoverNode = null;
         repaint();
     }
 
+    private void repaintNode(Node node) {
+        if (node == null) {
+            return;
+        }
+        int extent = graph.getShortestRadius() + 2;
+        Rectangle area = viewport.toScreen(new Rectangle(node.x - extent,
+                node.y - extent, 2 * extent, 2 * extent));
+        area.grow(1, 1);
+        repaint(area);
+    }
+
 }
@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.play;
+
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
+import com.shobute.arbigo.common.RenderStats;
+import com.shobute.arbigo.common.Stone;
+import com.shobute.arbigo.common.StoneSprites;
+import com.shobute.arbigo.common.Viewport;
+import com.shobute.arbigo.engine.GameState;
+import com.shobute.arbigo.engine.Position;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws a board from two cached images: one of the visible part of the
+ * graph, which is only redrawn when the size or viewport changes, and one of
+ * the stones, which is patched where the position has changed since it was
+ * last drawn.
+ *
+ * @author Ben Lloyd
+ */
+class BoardRenderer {
+
+    // Above this many changed nodes the stone layer is simply redrawn.
+    private static final int MAX_PATCHES = 256;
+
+    private final Graph graph;
+    private final GameState state;
+    private final Stone[] stones;
+    private final int radius;
+    private final Position drawn;
+    private final int[] dirty;
+    private final RenderStats stats;
+
+    private BufferedImage boardLayer;
+    private BufferedImage stoneLayer;
+    private AffineTransform transform;
+
+    /**
+     * Create a renderer for a game.
+     *
+     * @param graph The graph being played on.
+     * @param state The game state, read on every paint.
+     * @param stones A stone for each colour index.
+     * @param stats Timings for the nodes, edges, stones and blit phases.
+     */
+    BoardRenderer(Graph graph, GameState state, Stone[] stones,
+            RenderStats stats) {
+        this.graph = graph;
+        this.state = state;
+        this.stones = stones;
+        this.radius = graph.getShortestRadius();
+        this.drawn = new Position(state.size());
+        this.dirty = new int[MAX_PATCHES];
+        this.stats = stats;
+    }
+
+    /**
+     * Paint the board and stones, bringing the cached layers up to date
+     * first.
+     *
+     * @param g2d Graphics2D context, in component coordinates.
+     * @param width The width of the component.
+     * @param height The height of the component.
+     * @param viewport The part of the graph to show.
+     */
+    void paint(Graphics2D g2d, int width, int height, Viewport viewport) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (boardLayer == null || boardLayer.getWidth() != width
+                || boardLayer.getHeight() != height
+                || !transform.equals(viewport.getTransform())) {
+            rebuild(width, height, viewport);
+        } else {
+            update();
+        }
+        stats.mark("stones");
+        g2d.drawImage(boardLayer, 0, 0, null);
+        g2d.drawImage(stoneLayer, 0, 0, null);
+        stats.mark("blit");
+    }
+
+    private void rebuild(int width, int height, Viewport viewport) {
+        transform = viewport.getTransform();
+        Rectangle view = viewport.toGraph(new Rectangle(0, 0, width, height));
+        if (boardLayer == null || boardLayer.getWidth() != width
+                || boardLayer.getHeight() != height) {
+            boardLayer = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+            stoneLayer = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+        }
+
+        Graphics2D g2d = createGraphics(boardLayer);
+        g2d.setComposite(AlphaComposite.Clear);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.setTransform(transform);
+        graph.paintNodes(g2d, view);
+        stats.mark("nodes");
+        graph.paintEdges(g2d, view);
+        stats.mark("edges");
+        g2d.dispose();
+
+        redrawStones();
+    }
+
+    private void redrawStones() {
+        Graphics2D g2d = createGraphics(stoneLayer);
+        g2d.setComposite(AlphaComposite.Clear);
+        g2d.fillRect(0, 0, stoneLayer.getWidth(), stoneLayer.getHeight());
+        g2d.setComposite(AlphaComposite.SrcOver);
+        Position position = state.getPosition();
+        paintStones(g2d, position, new Rectangle(0, 0, stoneLayer.getWidth(),
+                stoneLayer.getHeight()));
+        g2d.dispose();
+        drawn.copyFrom(position);
+    }
+
+    private void update() {
+        Position position = state.getPosition();
+        int changed = 0;
+        for (int colour = 0; colour < stones.length; colour++) {
+            long[] now = position.getStones(colour);
+            long[] was = drawn.getStones(colour);
+            for (int word = 0; word < now.length; word++) {
+                long bits = now[word] ^ was[word];
+                while (bits != 0) {
+                    int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (changed == dirty.length) {
+                        redrawStones();
+                        return;
+                    }
+                    dirty[changed++] = id;
+                }
+            }
+        }
+        if (changed == 0) {
+            return;
+        }
+        // A recoloured node differs in two colours; patch it once.
+        Arrays.sort(dirty, 0, changed);
+        for (int i = 0; i < changed; i++) {
+            if (i == 0 || dirty[i] != dirty[i - 1]) {
+                patch(position, dirty[i]);
+            }
+        }
+        drawn.copyFrom(position);
+    }
+
+    /*
+     * Clears the pixels a node's stone covers, then repaints every stone which
+     * overlaps them, clipped to the same pixels.
+     */
+    private void patch(Position position, int id) {
+        Point2D centre = transform.transform(state.getNode(id), null);
+        int half = spriteHalf();
+        Rectangle pixels = new Rectangle((int) Math.floor(centre.getX()) - half,
+                (int) Math.floor(centre.getY()) - half, 2 * half + 1,
+                2 * half + 1);
+        if (!pixels.intersects(0, 0, stoneLayer.getWidth(),
+                stoneLayer.getHeight())) {
+            return;
+        }
+        Graphics2D g2d = createGraphics(stoneLayer);
+        g2d.setComposite(AlphaComposite.Clear);
+        g2d.fill(pixels);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.clip(pixels);
+        paintStones(g2d, position, pixels);
+        g2d.dispose();
+    }
+
+    /*
+     * Paints the stones which overlap an area of pixels. Stone outlines can
+     * overlap, so they are always painted in order of id.
+     */
+    private void paintStones(Graphics2D g2d, Position position,
+            Rectangle pixels) {
+        Rectangle reach = new Rectangle(pixels);
+        int half = spriteHalf();
+        reach.grow(half, half);
+        Rectangle area;
+        try {
+            area = transform.createInverse().createTransformedShape(reach)
+                    .getBounds();
+        } catch (NoninvertibleTransformException e) {
+            return;
+        }
+        List<Node> nearby = graph.nodesIn(area);
+        int[] ids = new int[nearby.size()];
+        int count = 0;
+        for (Node near : nearby) {
+            int id = state.getId(near);
+            if (id >= 0 && !position.isEmpty(id)) {
+                ids[count++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        double scale = transform.getScaleX();
+        Point2D centre = new Point2D.Double();
+        for (int i = 0; i < count; i++) {
+            transform.transform(state.getNode(ids[i]), centre);
+            stones[position.getColour(ids[i])].paintSprite(g2d, centre.getX(),
+                    centre.getY(), radius, 220, scale);
+        }
+    }
+
+    // How far a stone's pixels reach from its centre, allowing for rounding.
+    private int spriteHalf() {
+        return StoneSprites.size(radius, transform.getScaleX()) / 2 + 2;
+    }
+
+    private static Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        return g2d;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.play;
+
+import com.shobute.arbigo.engine.MonteCarlo;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * A player whose moves are chosen by Monte Carlo tree search. The search runs
+ * on a background thread and its result is handed back on the event
+ * dispatch thread.
+ *
+ * @author Ben Lloyd
+ */
+public class ComputerPlayer extends Player {
+
+    /**
+     * The longest time spent on a move, in milliseconds.
+     */
+    public static final long MAX_THINKING = 2000;
+
+    // One search at a time, so games against the computer don't compete.
+    private static final ExecutorService SEARCHER =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Computer player");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private Future<?> task;
+    private int generation;
+    private MonteCarlo.Result result;
+
+    public ComputerPlayer(int step) {
+        super(step);
+    }
+
+    /**
+     * Start searching for a move, stopping any search already running.
+     * Call this on the event dispatch thread.
+     *
+     * @param search The search to run.
+     * @param done Run on the event dispatch thread once the search is
+     * finished, unless it has been stopped.
+     */
+    public void think(final MonteCarlo search, final Runnable done) {
+        stop();
+        final int current = generation;
+        // A tenth of the remaining time, so the clock rarely runs out.
+        final long budget = Math.min(MAX_THINKING, getTime() * 100L);
+        task = SEARCHER.submit(new Runnable() {
+            @Override
+            public void run() {
+                final MonteCarlo.Result found = search.search(budget);
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == current) {
+                            task = null;
+                            result = found;
+                            done.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stop the search, if one is running. Call this on the event dispatch
+     * thread.
+     */
+    public void stop() {
+        generation++;
+        if (task != null) {
+            task.cancel(true);
+            task = null;
+        }
+    }
+
+    public boolean isThinking() {
+        return task != null;
+    }
+
+    /**
+     * @return The result of the last finished search, or null if there has
+     * been none.
+     */
+    public MonteCarlo.Result getResult() {
+        return result;
+    }
+
+}
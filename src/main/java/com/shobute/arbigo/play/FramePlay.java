@@ -25,7 +25,13 @@ package com.shobute.arbigo.play;
 
 import com.shobute.arbigo.common.Colour;
 import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
 import com.shobute.arbigo.common.Stone;
+import com.shobute.arbigo.engine.MonteCarlo;
+import com.shobute.arbigo.engine.Move;
+import com.shobute.arbigo.engine.RulesEngine;
+import com.shobute.arbigo.record.GameRecord;
+import com.shobute.arbigo.record.GameRecordWriter;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -43,12 +49,15 @@ import javax.swing.event.InternalFrameListener;
 public class FramePlay extends JInternalFrame implements InternalFrameListener {
 
     private Graph graph;
+    private RulesEngine engine;
     private int timeInterval;
     private Board board;
     private SideBar sideBar;
     private ArrayList<Player> players;
     private int turn;
     private boolean gameOver;
+    private GameRecordWriter record;
+    private MonteCarlo.Result lastSearch;
 
     /**
      * Creates new form FamePlay
@@ -58,8 +67,22 @@ public class FramePlay extends JInternalFrame implements InternalFrameListener {
      * @param timeInterval
      */
     public FramePlay(Graph graph, int numPlayers, int timeInterval) {
+        this(graph, numPlayers, 0, timeInterval);
+    }
+
+    /**
+     * Creates a game in which the last players are played by the computer.
+     *
+     * @param graph
+     * @param numPlayers
+     * @param numComputers The number of players played by the computer.
+     * @param timeInterval
+     */
+    public FramePlay(Graph graph, int numPlayers, int numComputers,
+            int timeInterval) {
         this.graph = graph == null ? new Graph(9) : graph;
         this.timeInterval = timeInterval;
+        this.engine = new RulesEngine(this.graph);
         this.board = new Board(this);
         this.sideBar = new SideBar(this);
         
@@ -69,8 +92,12 @@ public class FramePlay extends JInternalFrame implements InternalFrameListener {
         }
         players = new ArrayList<>(numPlayers);
         for (int i = 0; i < numPlayers; i++) {
-            players.add(new Player(timeInterval));
+            players.add(i < numPlayers - numComputers
+                    ? new Player(timeInterval)
+                    : new ComputerPlayer(timeInterval));
         }
+        record = new GameRecordWriter(GameRecord.newFile(),
+                engine.getState().getGraph(), numPlayers, timeInterval);
 
         setVisible(true);
         setSize(100, 100);
@@ -91,6 +118,7 @@ public class FramePlay extends JInternalFrame implements InternalFrameListener {
         add(sideBar, BorderLayout.EAST);
 
         pack();
+        think();
     }
     
     public boolean isGameOver() {
@@ -105,17 +133,54 @@ public class FramePlay extends JInternalFrame implements InternalFrameListener {
         return this.graph;
     }
 
+    public RulesEngine getEngine() {
+        return this.engine;
+    }
+
     public Player getPlayer() {
         return players.get(turn);
     }
+
+    /**
+     * @return The result of the computer's last search, or null if the
+     * computer hasn't moved.
+     */
+    public MonteCarlo.Result getLastSearch() {
+        return lastSearch;
+    }
     
+    /**
+     * Record the current player resigning and remove them from the game.
+     */
     public void resign() {
-        players.remove(turn);
+        record.resign(getPlayer().getColour(), getPlayer().getTime());
+        removePlayer();
+    }
+
+    /**
+     * Record the current player running out of time and remove them from the
+     * game.
+     */
+    public void timeout() {
+        record.timeout(getPlayer().getColour());
+        removePlayer();
+    }
+
+    private void removePlayer() {
+        Player removed = players.remove(turn);
+        if (removed instanceof ComputerPlayer) {
+            ((ComputerPlayer) removed).stop();
+        }
         turn = turn % players.size();
 
         if (players.size() == 1) {
             gameOver = true;
             sideBar.actionPerformed(new ActionEvent(this, 0, "game over"));
+            board.gameOver();
+        } else {
+            sideBar.repaint();
+            board.repaintHover();
+            think();
         }
     }
     
@@ -123,6 +188,116 @@ public class FramePlay extends JInternalFrame implements InternalFrameListener {
         return getPlayer().getStone();
     }
     
+    /**
+     * Play the current player's stone on a node and pass the turn on.
+     *
+     * @param node The node to play on.
+     * @return True if the move was played, false if it is illegal.
+     */
+    public boolean play(Node node) {
+        if (getPlayer() instanceof ComputerPlayer) {
+            return false;
+        }
+        return play(engine.getState().getId(node));
+    }
+
+    private boolean play(int id) {
+        if (gameOver || id < 0 || !engine.play(id, getPlayer().getColour())) {
+            return false;
+        }
+        record.move(id, getPlayer().getColour(), getPlayer().getTime());
+        nextTurn();
+        board.repaintMove(engine.getLastMove());
+        think();
+        return true;
+    }
+
+    /*
+     * Start the search for the computer's move if it is the computer's turn.
+     * The game has no passing, so a computer with no move resigns.
+     */
+    private void think() {
+        if (gameOver || !(getPlayer() instanceof ComputerPlayer)) {
+            return;
+        }
+        int[] colours = new int[players.size()];
+        for (int i = 0; i < colours.length; i++) {
+            colours[i] = players.get(i).getColour();
+        }
+        final ComputerPlayer computer = (ComputerPlayer) getPlayer();
+        computer.think(new MonteCarlo(engine, colours, turn), new Runnable() {
+            @Override
+            public void run() {
+                if (gameOver || getPlayer() != computer) {
+                    return;
+                }
+                lastSearch = computer.getResult();
+                if (lastSearch.getMove() == MonteCarlo.PASS
+                        || !play(lastSearch.getMove())) {
+                    resign();
+                }
+            }
+        });
+    }
+
+    private void stopThinking() {
+        for (Player player : players) {
+            if (player instanceof ComputerPlayer) {
+                ((ComputerPlayer) player).stop();
+            }
+        }
+    }
+
+    /**
+     * Take back the last move, returning the turn to the player who made it.
+     * The computer's moves are taken back too, until it is a person's turn.
+     *
+     * @return True if a move was taken back, false if there was no move or
+     * its player has since resigned.
+     */
+    public boolean takeback() {
+        if (gameOver) {
+            return false;
+        }
+        stopThinking();
+        boolean undone = undoMove();
+        boolean more = undone && hasPerson();
+        while (more && getPlayer() instanceof ComputerPlayer) {
+            more = undoMove();
+        }
+        think();
+        return undone;
+    }
+
+    private boolean hasPerson() {
+        for (Player player : players) {
+            if (!(player instanceof ComputerPlayer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean undoMove() {
+        Move move = engine.getLastMove();
+        if (gameOver || move == null) {
+            return false;
+        }
+
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).getColour() == move.getColour()) {
+                engine.undo();
+                record.takeback();
+                board.repaintMove(move);
+                turn = i;
+                getPlayer().revertIncrement();
+                sideBar.repaint();
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void nextTurn() {
         getPlayer().incrementTime();
         turn = (turn + 1) % players.size();
@@ -151,6 +326,8 @@ public class FramePlay extends JInternalFrame implements InternalFrameListener {
     @Override
     public void internalFrameClosed(InternalFrameEvent ife) {
         gameOver = true;
+        stopThinking();
+        record.closeLater();
     }
         
     @Override
@@ -33,6 +33,7 @@ import com.shobute.arbigo.common.Stone;
 public class Player {
 
     private Stone stone;
+    private final int colour;
     private String name;
     private int time;
     private int step;
@@ -40,6 +41,7 @@ public class Player {
     public Player(int step) {
         String colour = Colour.getNextColour();
         this.name = colour;
+        this.colour = Colour.indexOf(colour);
         this.stone = new Stone(colour);
         this.time = step;
         this.step = step;
@@ -53,6 +55,10 @@ public class Player {
         this.stone = stone;
     }
 
+    public int getColour() {
+        return colour;
+    }
+
     public String getName() {
         return name;
     }
@@ -75,4 +81,13 @@ public class Player {
         time += step;
     }
 
+    /**
+     * Remove the time added for a move that has been taken back.
+     */
+    public void revertIncrement() {
+        if (time > step) {
+            time -= step;
+        }
+    }
+
 }
@@ -24,10 +24,12 @@
 package com.shobute.arbigo.play;
 
 import com.shobute.arbigo.common.Colour;
+import com.shobute.arbigo.engine.MonteCarlo;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GridLayout;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -45,6 +47,7 @@ public class SideBar extends JPanel implements ActionListener {
 
     private Timer timer;
     private JButton jButtonResign;
+    private JButton jButtonTakeback;
     private FramePlay framePlay;
 
     public SideBar(final FramePlay framePlay) {
@@ -52,9 +55,23 @@ public class SideBar extends JPanel implements ActionListener {
         
         setLayout(new BorderLayout());
 
+        JPanel buttons = new JPanel(new GridLayout(0, 1));
+        buttons.setOpaque(false);
+        add(buttons, BorderLayout.SOUTH);
+
+        jButtonTakeback = new JButton();
+        jButtonTakeback.setText("Takeback");
+        buttons.add(jButtonTakeback);
+        jButtonTakeback.addActionListener(new java.awt.event.ActionListener() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                framePlay.takeback();
+            }
+        });
+
         jButtonResign = new JButton();
         jButtonResign.setText("Resign");
-        add(jButtonResign, BorderLayout.SOUTH);
+        buttons.add(jButtonResign);
         jButtonResign.addActionListener(new java.awt.event.ActionListener() {
             @Override
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -92,21 +109,31 @@ public class SideBar extends JPanel implements ActionListener {
             String time = framePlay.getPlayer().getTime() + "s remaining";
             g2d.drawString(time, 5, 35);
         }
+
+        MonteCarlo.Result search = framePlay.getLastSearch();
+        if (search != null) {
+            String rate = String.format("%.0f playouts/s",
+                    search.getPlayoutsPerSecond());
+            g2d.drawString(rate, 5, 55);
+        }
     }
 
     @Override
     public void actionPerformed(ActionEvent ae) {
         framePlay.getPlayer().decrementTime();
         if (framePlay.getPlayer().getTime() == 0) {
-            framePlay.resign();
+            framePlay.timeout();
         }
         
         if (framePlay.isGameOver()) {
             timer.stop();
             jButtonResign.setEnabled(false);
+            jButtonTakeback.setEnabled(false);
+            repaint();
+        } else {
+            // Only the clock line changes on a tick.
+            repaint(0, 20, getWidth(), 20);
         }
-        
-        repaint();
     }
 
 }
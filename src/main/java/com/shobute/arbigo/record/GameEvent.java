@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.record;
+
+/**
+ * One thing that happened in a recorded game. Every event is stored in the
+ * same number of bytes, so a record can be read or skipped through without
+ * parsing.
+ *
+ * @author Ben Lloyd
+ */
+public final class GameEvent {
+
+    /**
+     * What kind of event it is.
+     */
+    public enum Type {
+
+        /**
+         * A stone was placed on a node.
+         */
+        MOVE,
+        /**
+         * The last move was taken back.
+         */
+        TAKEBACK,
+        /**
+         * A player resigned.
+         */
+        RESIGN,
+        /**
+         * A player ran out of time.
+         */
+        TIMEOUT
+    }
+
+    static final int BYTES = 12;
+
+    private final Type type;
+    private final int node;
+    private final int colour;
+    private final int clock;
+
+    /**
+     * Create an event.
+     *
+     * @param type What happened.
+     * @param node The node played on, or -1 if the event is not a move.
+     * @param colour The colour index of the player, or -1 for a takeback.
+     * @param clock The player's remaining time in seconds, or -1 if unknown.
+     */
+    public GameEvent(Type type, int node, int colour, int clock) {
+        this.type = type;
+        this.node = node;
+        this.colour = colour;
+        this.clock = clock;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getNode() {
+        return node;
+    }
+
+    public int getColour() {
+        return colour;
+    }
+
+    public int getClock() {
+        return clock;
+    }
+
+    @Override
+    public String toString() {
+        return type + " node=" + node + " colour=" + colour + " clock=" + clock;
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.record;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * The layout of game record files. A record is a header followed by events,
+ * all big endian:
+ *
+ * <pre>
+ * magic "ARBR", version (high 16 bits) and flags (low 16 bits),
+ * 32 byte content hash of the board,
+ * number of players, seconds added per move, start time in milliseconds,
+ * then any number of events, each of
+ * type byte, colour byte, 2 reserved bytes, node id, clock in seconds.
+ * </pre>
+ *
+ * Events are only ever appended, so a record which was being written when
+ * the program stopped is still readable up to its last whole event.
+ *
+ * @author Ben Lloyd
+ */
+public final class GameRecord {
+
+    /**
+     * The file extension for game records.
+     */
+    public static final String EXTENSION = ".arbigame";
+
+    /**
+     * The format version written, and the newest which can be read.
+     */
+    public static final int VERSION = 1;
+
+    static final int MAGIC = 0x41524252;
+    static final int HASH_BYTES = 32;
+    static final int HEADER_BYTES = 8 + HASH_BYTES + 16;
+
+    private GameRecord() {
+    }
+
+    /**
+     * Get the directory games are recorded in, which is the arbigo.records
+     * system property if it is set.
+     *
+     * @return The directory, which may not exist yet.
+     */
+    public static Path getDirectory() {
+        String directory = System.getProperty("arbigo.records");
+        if (directory != null) {
+            return Paths.get(directory);
+        }
+        return Paths.get(System.getProperty("user.home"), ".arbigo", "games");
+    }
+
+    /**
+     * Get a file in the records directory for a game starting now.
+     *
+     * @return A path named after the current time.
+     */
+    public static Path newFile() {
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS")
+                .format(new Date());
+        return getDirectory().resolve("game-" + name + EXTENSION);
+    }
+
+}
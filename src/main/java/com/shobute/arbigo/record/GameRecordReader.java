@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.record;
+
+import com.shobute.arbigo.common.Colour;
+import com.shobute.arbigo.engine.RulesEngine;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a game record one event at a time, so only a small buffer of it is
+ * ever in memory however long the game was.
+ *
+ * @author Ben Lloyd
+ */
+public class GameRecordReader implements Closeable {
+
+    private static final GameEvent.Type[] types = GameEvent.Type.values();
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private final byte[] boardHash = new byte[GameRecord.HASH_BYTES];
+    private final int players;
+    private final int timeInterval;
+    private final long startTime;
+
+    /**
+     * Open a game record and read its header.
+     *
+     * @param file The record to read.
+     * @throws IOException If the file cannot be read or is not a record.
+     */
+    public GameRecordReader(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    /**
+     * Read a game record from a channel, starting with its header.
+     *
+     * @param channel The channel to read from, which is closed by close().
+     * @throws IOException If the channel cannot be read or does not hold a
+     * record.
+     */
+    public GameRecordReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        ((Buffer) buffer).limit(0);
+        try {
+            if (!fill(GameRecord.HEADER_BYTES)
+                    || buffer.getInt() != GameRecord.MAGIC) {
+                throw new IOException("Not a game record");
+            }
+            int version = buffer.getInt() >>> 16;
+            if (version > GameRecord.VERSION) {
+                throw new IOException("Game record version " + version
+                        + " is newer than this program");
+            }
+            buffer.get(boardHash);
+            players = buffer.getInt();
+            timeInterval = buffer.getInt();
+            startTime = buffer.getLong();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the content hash of the board the game was played on.
+     *
+     * @return A new array.
+     * @see com.shobute.arbigo.common.FrozenGraph#getContentHash()
+     */
+    public byte[] getBoardHash() {
+        return boardHash.clone();
+    }
+
+    public int getPlayers() {
+        return players;
+    }
+
+    public int getTimeInterval() {
+        return timeInterval;
+    }
+
+    /**
+     * Get when the game started.
+     *
+     * @return Milliseconds since the epoch.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Read the next event. A partly written event at the end of the record
+     * is treated as the end.
+     *
+     * @return The event, or null at the end of the record.
+     * @throws IOException If the record cannot be read or is corrupt.
+     */
+    public GameEvent next() throws IOException {
+        if (!fill(GameEvent.BYTES)) {
+            return null;
+        }
+        int type = buffer.get() & 0xff;
+        int colour = buffer.get();
+        buffer.getShort();
+        int node = buffer.getInt();
+        int clock = buffer.getInt();
+        if (type >= types.length) {
+            throw new IOException("Corrupt game record");
+        }
+        return new GameEvent(types[type], node, colour, clock);
+    }
+
+    /**
+     * Play the rest of the record's moves and takebacks on an engine.
+     *
+     * @param engine An engine for the board the game was played on.
+     * @return The number of events read.
+     * @throws IOException If the record cannot be read, is for another board
+     * or holds a move the engine does not allow.
+     */
+    public int replay(RulesEngine engine) throws IOException {
+        if (!Arrays.equals(boardHash,
+                engine.getState().getGraph().getContentHash())) {
+            throw new IOException("Game record is for a different board");
+        }
+        int count = 0;
+        for (GameEvent event = next(); event != null; event = next()) {
+            count++;
+            switch (event.getType()) {
+                case MOVE:
+                    int node = event.getNode();
+                    int colour = event.getColour();
+                    if (node < 0 || node >= engine.getState().size()
+                            || colour < 0 || colour >= Colour.colours.length
+                            || !engine.play(node, colour)) {
+                        throw new IOException("Illegal move in game record: "
+                                + event);
+                    }
+                    break;
+                case TAKEBACK:
+                    engine.undo();
+                    break;
+                default:
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Make sure at least bytes are buffered, reading more if needed.
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        ((Buffer) buffer).flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
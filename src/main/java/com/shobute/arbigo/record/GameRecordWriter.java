@@ -0,0 +1,308 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.record;
+
+import com.shobute.arbigo.common.FrozenGraph;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Appends a game's events to a record as they happen. Every method except
+ * flush() and close() only queues its event, and a single background thread
+ * shared by all writers does the file work, so recording never blocks the
+ * caller. Events queued together are written to the file in one go.
+ *
+ * Errors are kept until flush() or close(), which throw them. closeLater()
+ * closes the file without waiting and prints any error instead.
+ *
+ * @author Ben Lloyd
+ */
+public class GameRecordWriter implements Closeable {
+
+    private static final ExecutorService thread =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Game recorder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Path file;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+    private final AtomicInteger pending = new AtomicInteger();
+    private FileChannel channel;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    /**
+     * Start recording a game. If the file already holds a record of a game
+     * on the same board, events are added to the end of it.
+     *
+     * @param file The record to write.
+     * @param graph The board being played on.
+     * @param players The number of players.
+     * @param timeInterval The seconds each player gets per move.
+     */
+    public GameRecordWriter(final Path file, final FrozenGraph graph,
+            final int players, final int timeInterval) {
+        this.file = file;
+        final long startTime = System.currentTimeMillis();
+        submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                open(graph, players, timeInterval, startTime);
+                return null;
+            }
+        });
+    }
+
+    private void open(FrozenGraph graph, int players, int timeInterval,
+            long startTime) throws IOException {
+        byte[] hash = graph.getContentHash();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        long size = channel.size();
+        if (size == 0) {
+            buffer.putInt(GameRecord.MAGIC).putInt(GameRecord.VERSION << 16)
+                    .put(hash).putInt(players).putInt(timeInterval)
+                    .putLong(startTime);
+            return;
+        }
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            if (!Arrays.equals(hash, reader.getBoardHash())) {
+                throw new IOException("Game record is for a different board");
+            }
+        }
+        // Drop any event left half written when the record was last open.
+        long events = (size - GameRecord.HEADER_BYTES) / GameEvent.BYTES;
+        channel.truncate(GameRecord.HEADER_BYTES + events * GameEvent.BYTES);
+    }
+
+    /**
+     * Record a stone being placed.
+     *
+     * @param node The node's id.
+     * @param colour The colour index of the stone.
+     * @param clock The player's remaining time in seconds.
+     */
+    public void move(int node, int colour, int clock) {
+        append(new GameEvent(GameEvent.Type.MOVE, node, colour, clock));
+    }
+
+    /**
+     * Record the last move being taken back.
+     */
+    public void takeback() {
+        append(new GameEvent(GameEvent.Type.TAKEBACK, -1, -1, -1));
+    }
+
+    /**
+     * Record a player resigning.
+     *
+     * @param colour The player's colour index.
+     * @param clock The player's remaining time in seconds.
+     */
+    public void resign(int colour, int clock) {
+        append(new GameEvent(GameEvent.Type.RESIGN, -1, colour, clock));
+    }
+
+    /**
+     * Record a player running out of time.
+     *
+     * @param colour The player's colour index.
+     */
+    public void timeout(int colour) {
+        append(new GameEvent(GameEvent.Type.TIMEOUT, -1, colour, 0));
+    }
+
+    /**
+     * Queue an event. Events after the writer is closed are ignored.
+     *
+     * @param event The event to record.
+     */
+    public void append(final GameEvent event) {
+        if (closed) {
+            return;
+        }
+        submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                if (buffer.remaining() < GameEvent.BYTES) {
+                    drain();
+                }
+                buffer.put((byte) event.getType().ordinal())
+                        .put((byte) event.getColour()).putShort((short) 0)
+                        .putInt(event.getNode()).putInt(event.getClock());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Wait until every queued event is in the file.
+     *
+     * @throws IOException If the record could not be written.
+     */
+    public void flush() throws IOException {
+        await(submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                drain();
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * Write every queued event and close the file.
+     *
+     * @throws IOException If the record could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        await(closeFile(false));
+    }
+
+    /**
+     * Write every queued event and close the file on the background thread,
+     * without waiting, as when a game's window is closed. A failure is
+     * printed, as there is nobody left to throw it to.
+     *
+     * @return The close, which can be waited on.
+     */
+    public Future<?> closeLater() {
+        if (closed) {
+            return thread.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+        closed = true;
+        return closeFile(true);
+    }
+
+    private Future<?> closeFile(final boolean report) {
+        // Not submitted as a task, so the file is closed even after a
+        // failure.
+        return thread.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (channel == null) {
+                    return;
+                }
+                try {
+                    if (failure == null) {
+                        drain();
+                    }
+                } catch (IOException ex) {
+                    failure = ex;
+                }
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                }
+                if (report && failure != null) {
+                    failure.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /*
+     * Run a task on the background thread, writing out the buffer once no
+     * more tasks are queued behind it. Nothing more is done after a failure.
+     */
+    private Future<?> submit(final Callable<Void> task) {
+        pending.incrementAndGet();
+        return thread.submit(new Runnable() {
+            @Override
+            public void run() {
+                boolean last = pending.decrementAndGet() == 0;
+                if (failure != null) {
+                    return;
+                }
+                try {
+                    task.call();
+                    if (last && channel != null && channel.isOpen()) {
+                        drain();
+                    }
+                } catch (Exception ex) {
+                    failure = ex instanceof IOException ? (IOException) ex
+                            : new IOException(ex);
+                }
+            }
+        });
+    }
+
+    private void await(Future<?> task) throws IOException {
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void drain() throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+}
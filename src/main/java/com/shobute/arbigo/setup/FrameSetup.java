@@ -23,11 +23,11 @@
  */
 package com.shobute.arbigo.setup;
 
+import com.shobute.arbigo.common.BoardFormats;
 import com.shobute.arbigo.common.Graph;
 import com.shobute.arbigo.play.FramePlay;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.nio.file.Paths;
 import javax.swing.JDesktopPane;
 import javax.swing.JFileChooser;
 import javax.swing.JInternalFrame;
@@ -72,6 +72,7 @@ public class FrameSetup extends JInternalFrame {
         jLabelBoard = new javax.swing.JLabel();
         jLabelPlayers = new javax.swing.JLabel();
         jComboBoxPlayers = new javax.swing.JComboBox();
+        jCheckBoxComputer = new javax.swing.JCheckBox();
         jSeparator1 = new javax.swing.JSeparator();
         jLabelTime = new javax.swing.JLabel();
         jTextFieldTime = new javax.swing.JTextField();
@@ -112,6 +113,8 @@ public class FrameSetup extends JInternalFrame {
 
         jComboBoxPlayers.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "2", "3", "4", "5", "6", "7", "8", "9" }));
 
+        jCheckBoxComputer.setText("Computer plays last colour");
+
         jLabelTime.setText("Time");
 
         jTextFieldTime.setText("30");
@@ -161,7 +164,9 @@ public class FrameSetup extends JInternalFrame {
                                     .addComponent(jComboBoxPlayers, javax.swing.GroupLayout.Alignment.LEADING, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .addComponent(jTextFieldTime, javax.swing.GroupLayout.Alignment.LEADING))
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
-                                .addComponent(jLabel4)))
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                                    .addComponent(jCheckBoxComputer)
+                                    .addComponent(jLabel4))))
                         .addGap(0, 0, Short.MAX_VALUE)))
                 .addContainerGap())
         );
@@ -181,7 +186,8 @@ public class FrameSetup extends JInternalFrame {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabelPlayers)
-                    .addComponent(jComboBoxPlayers, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                    .addComponent(jComboBoxPlayers, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jCheckBoxComputer))
                 .addGap(18, 18, 18)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabelTime)
@@ -206,8 +212,10 @@ public class FrameSetup extends JInternalFrame {
     private void jButtonPlayActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButtonPlayActionPerformed
         int numPlayers = Integer.parseInt(
                 jComboBoxPlayers.getSelectedItem().toString());
+        int numComputers = jCheckBoxComputer.isSelected() ? 1 : 0;
         int timeInterval = Integer.parseInt(jTextFieldTime.getText());
-        desktop.add(new FramePlay(graph, numPlayers, timeInterval), 0);
+        desktop.add(new FramePlay(graph, numPlayers, numComputers,
+                timeInterval), 0);
     }//GEN-LAST:event_jButtonPlayActionPerformed
 
     private void jButtonLoadActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButtonLoadActionPerformed
@@ -216,11 +224,8 @@ public class FrameSetup extends JInternalFrame {
             String file = jFileChooser.getSelectedFile().getAbsoluteFile()
                     .toString();
             try {
-                ObjectInputStream in = new ObjectInputStream(
-                        new FileInputStream(file));
-                Graph newGraph = (Graph) in.readObject();
-                setBoard(newGraph);
-            } catch (IOException | ClassNotFoundException ex) {
+                setBoard(BoardFormats.read(Paths.get(file)));
+            } catch (IOException ex) {
                 ex.printStackTrace();
             }
         }
@@ -231,6 +236,7 @@ public class FrameSetup extends JInternalFrame {
     private javax.swing.JButton jButtonDraw;
     private javax.swing.JButton jButtonLoad;
     private javax.swing.JButton jButtonPlay;
+    private javax.swing.JCheckBox jCheckBoxComputer;
     private javax.swing.JComboBox jComboBoxPlayers;
     private javax.swing.JLabel jLabel4;
     private javax.swing.JLabel jLabelBoard;
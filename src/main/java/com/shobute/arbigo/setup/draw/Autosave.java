@@ -0,0 +1,381 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw;
+
+import com.shobute.arbigo.common.BoardFile;
+import com.shobute.arbigo.common.BoardFormats;
+import com.shobute.arbigo.common.FrozenGraph;
+import com.shobute.arbigo.common.Graph;
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.Timer;
+
+/**
+ * Saves the drawing on a canvas every few seconds, so a crash loses little
+ * work.
+ * <p>
+ * The graph is frozen on the event dispatch thread, which only copies it
+ * into arrays. Encoding and writing happen on a background thread, through
+ * a temporary file which is renamed over the last save, so a save is never
+ * left half written. Nothing is written while the drawing is unchanged.
+ * <p>
+ * An editor owns its autosave while it is open, and holds a lock on a
+ * .lock file beside it so other instances of the program can tell. Only
+ * autosaves nobody owns are offered back as leftovers.
+ *
+ * @author Ben Lloyd
+ */
+public class Autosave {
+
+    /**
+     * How often to save, in milliseconds.
+     */
+    public static final int INTERVAL = 5000;
+
+    private static final ExecutorService WRITER =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Autosave");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // The autosaves owned by editors in this program. Locks are held per
+    // program, so these are never checked by locking.
+    private static final Set<Path> OWNED =
+            Collections.synchronizedSet(new HashSet<Path>());
+
+    private final Canvas canvas;
+    private final Timer timer;
+    private Path file;
+    private FileChannel lock;
+    private long saved = -1;
+    private Future<?> pending;
+
+    // Only touched on the writer thread.
+    private byte[] savedHash;
+    private Color savedColour;
+
+    /**
+     * Save a canvas to a new file in the autosave directory.
+     *
+     * @param canvas The canvas to save.
+     */
+    public Autosave(Canvas canvas) {
+        this.canvas = canvas;
+        claim(newFile());
+        timer = new Timer(INTERVAL, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                save();
+            }
+        });
+    }
+
+    /**
+     * Get the directory autosaves are kept in. The arbigo.autosave system
+     * property overrides the default of .arbigo/autosave in the user's home.
+     *
+     * @return The directory, which may not exist yet.
+     */
+    public static Path getDirectory() {
+        String directory = System.getProperty("arbigo.autosave");
+        if (directory != null) {
+            return Paths.get(directory);
+        }
+        return Paths.get(System.getProperty("user.home"), ".arbigo", "autosave");
+    }
+
+    private static Path newFile() {
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS")
+                .format(new Date());
+        return getDirectory().resolve("drawing-" + name + BoardFile.EXTENSION);
+    }
+
+    private static Path lockFile(Path autosave) {
+        return autosave.resolveSibling(autosave.getFileName() + ".lock");
+    }
+
+    /*
+     * Take ownership of an autosave, locking it against other instances of
+     * the program. The lock is only a courtesy, so failing to take it is not
+     * an error.
+     */
+    private void claim(Path claimed) {
+        file = claimed;
+        lock = null;
+        OWNED.add(claimed);
+        try {
+            Files.createDirectories(claimed.toAbsolutePath().getParent());
+            lock = FileChannel.open(lockFile(claimed),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock.tryLock();
+        } catch (IOException | OverlappingFileLockException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static void release(Path released, FileChannel lock)
+            throws IOException {
+        try {
+            if (lock != null) {
+                lock.close();
+                Files.deleteIfExists(lockFile(released));
+            }
+        } finally {
+            OWNED.remove(released);
+        }
+    }
+
+    private static boolean isOwned(Path autosave) {
+        // Checked first, as closing a channel on a file this program has
+        // locked would release the lock.
+        if (OWNED.contains(autosave)) {
+            return true;
+        }
+        Path lockFile = lockFile(autosave);
+        if (!Files.exists(lockFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile,
+                StandardOpenOption.WRITE)) {
+            return channel.tryLock() == null;
+        } catch (IOException | OverlappingFileLockException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Find the newest autosave left behind by an editor which did not close,
+     * skipping those still owned by an open editor.
+     *
+     * @return The file, or null if there is none.
+     * @throws IOException If the directory cannot be read.
+     */
+    public static Path findLeftover() throws IOException {
+        Path directory = getDirectory();
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        Path newest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "drawing-*" + BoardFile.EXTENSION)) {
+            for (Path leftover : files) {
+                // Names sort by the time they were made.
+                if ((newest == null || leftover.compareTo(newest) > 0)
+                        && !isOwned(leftover)) {
+                    newest = leftover;
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Delete an autosave which is not going to be recovered.
+     *
+     * @param leftover The file, as found by findLeftover().
+     * @throws IOException If the file cannot be deleted.
+     */
+    public static void deleteLeftover(Path leftover) throws IOException {
+        Files.deleteIfExists(leftover);
+        Files.deleteIfExists(lockFile(leftover));
+    }
+
+    /**
+     * Carry on saving to a file left behind by an earlier editor, instead of
+     * a new one. The editor's own autosave is deleted.
+     *
+     * @param leftover The file to save to.
+     */
+    public void resume(Path leftover) {
+        final Path abandoned = file;
+        final FileChannel abandonedLock = lock;
+        claim(leftover);
+        saved = -1;
+        submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                Files.deleteIfExists(abandoned);
+                release(abandoned, abandonedLock);
+                savedHash = null;
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Get the file being saved to.
+     *
+     * @return The path of the autosave.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Start saving every few seconds.
+     */
+    public void start() {
+        timer.start();
+    }
+
+    boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    /**
+     * Save now if the drawing has changed since the last save and no save
+     * is still being written. Called on the event dispatch thread.
+     *
+     * @return The write, or null if there was nothing to save.
+     */
+    public Future<?> save() {
+        if (canvas.getRevision() == saved
+                || (pending != null && !pending.isDone())) {
+            return null;
+        }
+        saved = canvas.getRevision();
+        Graph graph = canvas.getGraph();
+        pending = write(graph.freeze(), graph.getColour(), file, true);
+        return pending;
+    }
+
+    /**
+     * Write the drawing to a file in the background, such as for an
+     * explicit save, in the format the file's name asks for. The file is
+     * replaced in one step.
+     *
+     * @param target The file to write.
+     * @return The write, which fails with the IOException if one is thrown.
+     */
+    public Future<?> saveTo(Path target) {
+        Graph graph = canvas.getGraph();
+        return write(graph.freeze(), graph.getColour(), target, false);
+    }
+
+    private Future<?> write(final FrozenGraph frozen, final Color colour,
+            final Path target, final boolean skipUnchanged) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                byte[] hash = null;
+                if (skipUnchanged) {
+                    hash = frozen.getContentHash();
+                    if (Arrays.equals(hash, savedHash)
+                            && colour.equals(savedColour)
+                            && Files.exists(target)) {
+                        return null;
+                    }
+                }
+                replace(frozen, colour, target);
+                if (skipUnchanged) {
+                    savedHash = hash;
+                    savedColour = colour;
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void replace(FrozenGraph frozen, Color colour, Path target)
+            throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory,
+                target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                BoardFormats.write(frozen, colour, target, channel);
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Stop saving and delete the autosave once any save still being written
+     * has finished, as when the editor is closed normally.
+     *
+     * @return The deletion.
+     */
+    public Future<?> discard() {
+        timer.stop();
+        saved = canvas.getRevision();
+        final Path discarded = file;
+        final FileChannel discardedLock = lock;
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                Files.deleteIfExists(discarded);
+                release(discarded, discardedLock);
+                savedHash = null;
+                return null;
+            }
+        });
+    }
+
+    private static <T> Future<T> submit(final Callable<T> task) {
+        return WRITER.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try {
+                    return task.call();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    throw ex;
+                }
+            }
+        });
+    }
+
+}
@@ -25,32 +25,46 @@ package com.shobute.arbigo.setup.draw;
 
 import com.shobute.arbigo.common.Node;
 import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.RenderStats;
+import com.shobute.arbigo.common.Viewport;
+import com.shobute.arbigo.setup.draw.history.AddNodes;
+import com.shobute.arbigo.setup.draw.history.Command;
+import com.shobute.arbigo.setup.draw.history.History;
+import com.shobute.arbigo.setup.draw.history.RemoveNodes;
 import com.shobute.arbigo.setup.draw.state.SelectState;
 import com.shobute.arbigo.setup.draw.state.State;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import javax.swing.AbstractAction;
 import javax.swing.JPanel;
-import javax.swing.Timer;
-import org.apache.commons.lang.SerializationUtils;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
 
 /**
  *
  * @author Ben Lloyd
  */
-public class Canvas extends JPanel implements ActionListener {
+public class Canvas extends JPanel {
+
+    private static final double ZOOM_STEP = 1.1;
+    private static final double MIN_GRID_PIXELS = 4;
 
     private Graphics2D g2d;
     private Graph graph;
@@ -59,88 +73,129 @@ public class Canvas extends JPanel implements ActionListener {
     private boolean grid;
     private final Color defaultColor;
     private State state;
-    private final Timer timer;
-    private final ArrayList<Graph> history;
-    private int historyIndex;
-    private ArrayList<Line2D.Float> gridLines;
+    private History history;
+    private long revision;
+    private final Viewport viewport;
+    private final RenderStats stats;
+    private boolean showStats;
 
     /**
      * The canvas to draw a graph on.
      */
     public Canvas() {
-        history = new ArrayList<>();
         defaultColor = Color.BLACK;
         grid = true;
         copied = new HashSet<>();
         selectedNodes = new HashSet<>();
         graph = new Graph();
+        history = new History(graph);
         state = new SelectState(this);
+        viewport = new Viewport();
+        stats = new RenderStats("Canvas", "grid", "nodes", "edges", "hover");
+        showStats = RenderStats.isShownByDefault();
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "toggleStats");
+        getActionMap().put("toggleStats", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                setShowStats(!showStats);
+            }
+        });
 
         MouseAdapter listener = new MouseAdapter() {
+            private Point panned;
+
             @Override
             public void mouseClicked(MouseEvent me) {
-                state.mouseClicked(me);
+                if (SwingUtilities.isLeftMouseButton(me)) {
+                    state.mouseClicked(toGraph(me));
+                }
             }
 
             @Override
             public void mouseMoved(MouseEvent me) {
-                state.mouseMoved(me);
+                state.mouseMoved(toGraph(me));
             }
 
             @Override
             public void mousePressed(MouseEvent me) {
-                state.mousePressed(me);
+                if (SwingUtilities.isLeftMouseButton(me)) {
+                    state.mousePressed(toGraph(me));
+                } else {
+                    panned = me.getPoint();
+                }
             }
 
             @Override
             public void mouseReleased(MouseEvent me) {
-                state.mouseReleased(me);
+                if (SwingUtilities.isLeftMouseButton(me)) {
+                    state.mouseReleased(toGraph(me));
+                } else {
+                    panned = null;
+                }
             }
 
             @Override
             public void mouseDragged(MouseEvent me) {
-                state.mouseDragged(me);
+                if (panned == null) {
+                    state.mouseDragged(toGraph(me));
+                } else {
+                    viewport.pan(me.getX() - panned.x, me.getY() - panned.y);
+                    panned = me.getPoint();
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent mwe) {
+                viewport.zoom(Math.pow(ZOOM_STEP, -mwe.getPreciseWheelRotation()),
+                        mwe.getPoint());
+                repaint();
             }
         };
 
         addMouseListener(listener);
         addMouseMotionListener(listener);
-
-        timer = new Timer(20, this);
-        timer.start();
-
-        history.add(new Graph());
-
-        addComponentListener(new ComponentAdapter() {
-            @Override
-            public void componentResized(ComponentEvent e) {
-                constructGrid();
-            }
-        });
+        addMouseWheelListener(listener);
     }
 
-    private void constructGrid() {
-        int distance = graph.getNodeSize() * 2;
-        gridLines = new ArrayList<>();
-        for (int x = 0; x < this.getWidth(); x += distance) {
-            gridLines.add(new Line2D.Float(x, 0, x, this.getHeight()));
-        }
-        for (int y = 0; y < this.getHeight(); y += distance) {
-            gridLines.add(new Line2D.Float(0, y, this.getWidth(), y));
-        }
+    /*
+     * States work in graph coordinates, so they are given events with the
+     * viewport undone.
+     */
+    private MouseEvent toGraph(MouseEvent me) {
+        Point point = viewport.toGraph(me.getPoint());
+        return new MouseEvent(me.getComponent(), me.getID(), me.getWhen(),
+                me.getModifiersEx(), point.x, point.y, me.getClickCount(),
+                me.isPopupTrigger(), me.getButton());
     }
 
-    private void paintGrid() {
-        if (gridLines == null) {
-            constructGrid();
+    private void paintGrid(Rectangle view) {
+        int distance = graph.getNodeSize() * 2;
+        if (distance * viewport.getScale() < MIN_GRID_PIXELS) {
+            return;
         }
         g2d.setColor(new Color(0f, 0f, 0f, 0.2f));
-        for (Line2D.Float line : gridLines) {
-            g2d.draw(line);
+        g2d.setStroke(new BasicStroke(0));
+        int x0 = floorTo(view.x, distance);
+        int y0 = floorTo(view.y, distance);
+        int x1 = view.x + view.width;
+        int y1 = view.y + view.height;
+        for (int x = x0; x <= x1; x += distance) {
+            g2d.draw(new Line2D.Float(x, view.y, x, y1));
+        }
+        for (int y = y0; y <= y1; y += distance) {
+            g2d.draw(new Line2D.Float(view.x, y, x1, y));
         }
+        g2d.setStroke(new BasicStroke());
         g2d.setColor(defaultColor);
     }
 
+    private static int floorTo(int value, int step) {
+        int mod = value % step;
+        return mod < 0 ? value - mod - step : value - mod;
+    }
+
     /**
      * Invoked by Swing to draw components. Applications should not invoke paint
      * directly, but should instead use the repaint method to schedule the
@@ -150,28 +205,80 @@ public class Canvas extends JPanel implements ActionListener {
      */
     @Override
     public void paint(Graphics g) {
+        stats.beginFrame();
         super.paint(g); // clears the graphic
         g2d = (Graphics2D) g;
 
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        Rectangle view = viewport.toGraph(clip);
+        AffineTransform transform = g2d.getTransform();
+        viewport.apply(g2d);
+
         if (grid) {
-            paintGrid();
+            paintGrid(view);
         }
+        stats.mark("grid");
 
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_ON);
-        graph.paintNodes(g2d);
-        graph.paintEdges(g2d);
+        graph.paintNodes(g2d, view);
+        stats.mark("nodes");
+        graph.paintEdges(g2d, view);
+        stats.mark("edges");
         state.draw(g2d);
+        stats.mark("hover");
+        stats.endFrame();
+
+        if (showStats) {
+            g2d.setTransform(transform);
+            stats.paint(g2d);
+        }
+    }
+
+    /**
+     * Show or hide the rendering statistics over the drawing.
+     *
+     * @param show True to show them.
+     */
+    public void setShowStats(boolean show) {
+        showStats = show;
+        repaint();
+    }
+
+    // While statistics are shown, every repaint also refreshes them.
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        super.repaint(tm, x, y, width, height);
+        if (showStats) {
+            Rectangle bounds = stats.getBounds();
+            super.repaint(tm, bounds.x, bounds.y, bounds.width, bounds.height);
+        }
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        stats.register();
+    }
+
+    @Override
+    public void removeNotify() {
+        stats.unregister();
+        super.removeNotify();
     }
 
     /**
      * Delete the selected nodes.
      */
     public void delete() {
-        for (Node selectedNode : selectedNodes) {
-            graph.removeNode(selectedNode);
+        if (!selectedNodes.isEmpty()) {
+            execute(new RemoveNodes(selectedNodes));
+            selectedNodes.clear();
         }
-        checkpoint();
+        repaint();
     }
 
     /**
@@ -188,42 +295,59 @@ public class Canvas extends JPanel implements ActionListener {
      * Paste the copied nodes.
      */
     public void paste() {
-        Node node;
         selectedNodes.clear();
+        List<Node> pasted = new ArrayList<>();
         for (Point copiedPoint : copied) {
             copiedPoint.translate(graph.getNodeSize(), graph.getNodeSize());
-            node = new Node(copiedPoint);
-            selectedNodes.add(node);
-            graph.addNode(node);
+            pasted.add(new Node(copiedPoint));
         }
-        checkpoint();
+        if (!pasted.isEmpty()) {
+            execute(new AddNodes(pasted));
+            selectedNodes.addAll(pasted);
+        }
+        repaint();
+    }
+
+    /**
+     * Make an edit to the graph which can be undone.
+     *
+     * @param command The edit to make.
+     */
+    public void execute(Command command) {
+        command.apply(graph);
+        history.record(command, graph);
+        revision++;
     }
 
     /**
-     * Create a checkpoint in history that can be undoed to.
+     * Record an edit which has already been made to the graph, so it can be
+     * undone.
+     *
+     * @param command The edit which was made.
      */
-    public void checkpoint() {
-        history.add(++historyIndex, (Graph) SerializationUtils.clone(graph));
+    public void record(Command command) {
+        history.record(command, graph);
+        revision++;
     }
 
     /**
-     * Revert back to the previous checkpoint in history.
+     * Undo the last edit.
      */
     public void undo() {
-        if (historyIndex > 0) {
-            graph = history.get(--historyIndex);
-        }
-        selectedNodes.clear();
+        unSelectNodes();
+        graph = history.undo(graph);
+        revision++;
+        repaint();
     }
 
     /**
-     * Revert back to the next checkpoint in history.
+     * Redo the last edit which was undone.
      */
     public void redo() {
-        if (historyIndex < history.size() - 1) {
-            graph = history.get(++historyIndex);
-        }
-        selectedNodes.clear();
+        unSelectNodes();
+        graph = history.redo(graph);
+        revision++;
+        repaint();
     }
 
     /**
@@ -233,6 +357,7 @@ public class Canvas extends JPanel implements ActionListener {
      */
     public void setState(State state) {
         this.state = state;
+        repaint();
     }
 
     /**
@@ -253,14 +378,27 @@ public class Canvas extends JPanel implements ActionListener {
         return this.graph;
     }
 
+    /**
+     * Get a number which changes whenever the graph is edited, undone or
+     * replaced.
+     *
+     * @return The revision of the graph.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
     /**
      * Set the graph.
      *
      * @param graph The graph to set.
      */
     public void setGraph(Graph graph) {
-        this.graph = (Graph) SerializationUtils.clone(graph);
-        checkpoint();
+        this.graph = graph.copy();
+        history = new History(this.graph);
+        revision++;
+        selectedNodes.clear();
+        repaint();
     }
 
     /**
@@ -270,6 +408,7 @@ public class Canvas extends JPanel implements ActionListener {
      */
     public void setGrid(boolean enable) {
         this.grid = enable;
+        repaint();
     }
 
     /**
@@ -288,17 +427,45 @@ public class Canvas extends JPanel implements ActionListener {
         for (Node node : getSelectedNodes()) {
             node.setColour(Color.BLACK);
         }
+        repaintNodes(getSelectedNodes());
         getSelectedNodes().clear();
     }
 
     /**
-     * Action method for Timer to repaint the image, do not call this directly.
+     * Repaint the area around some nodes, including the edges leaving them.
      *
-     * @param ae
+     * @param nodes The nodes which have changed.
      */
-    @Override
-    public void actionPerformed(ActionEvent ae) {
-        repaint();
+    public void repaintNodes(Collection<Node> nodes) {
+        Rectangle area = null;
+        for (Node node : nodes) {
+            if (area == null) {
+                area = new Rectangle(node);
+            } else {
+                area.add(node);
+            }
+            for (Node adjNode : node.getAdjacentNodes()) {
+                area.add(adjNode);
+            }
+        }
+        if (area != null) {
+            repaintArea(area);
+        }
+    }
+
+    /**
+     * Repaint an area of the drawing, widened to cover the nodes and lines
+     * drawn at its edges.
+     *
+     * @param area The area which has changed, in graph coordinates.
+     */
+    public void repaintArea(Rectangle area) {
+        int pad = graph.getNodeSize() + 2;
+        Rectangle padded = new Rectangle(area);
+        padded.grow(pad, pad);
+        Rectangle screen = viewport.toScreen(padded);
+        screen.grow(1, 1);
+        repaint(screen);
     }
 
 }
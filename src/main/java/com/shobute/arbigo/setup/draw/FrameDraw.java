@@ -23,20 +23,24 @@
  */
 package com.shobute.arbigo.setup.draw;
 
+import com.shobute.arbigo.common.BoardFile;
+import com.shobute.arbigo.common.BoardFormats;
 import com.shobute.arbigo.common.Graph;
 import com.shobute.arbigo.setup.FrameSetup;
 import com.shobute.arbigo.setup.draw.state.EdgeState;
 import com.shobute.arbigo.setup.draw.state.NodeState;
 import com.shobute.arbigo.setup.draw.state.SelectState;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import javax.swing.JFileChooser;
 import javax.swing.JInternalFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 
 /**
  *
@@ -46,6 +50,7 @@ public class FrameDraw extends JInternalFrame {
 
     private String file = null;
     private FrameSetup setup;
+    private Autosave autosave;
 
     /**
      * Creates new form NewJInternalFrame
@@ -53,11 +58,83 @@ public class FrameDraw extends JInternalFrame {
     @Deprecated
     public FrameDraw() {
         initComponents();
+        initAutosave();
     }
 
     public FrameDraw(FrameSetup setup) {
         this.setup = setup;
         initComponents();
+        initAutosave();
+    }
+
+    private void initAutosave() {
+        autosave = new Autosave(jPanelCanvas);
+        addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameOpened(InternalFrameEvent ife) {
+                recover();
+            }
+
+            @Override
+            public void internalFrameClosed(InternalFrameEvent ife) {
+                autosave.discard();
+            }
+        });
+        autosave.start();
+    }
+
+    /*
+     * An autosave is only left behind when an editor did not close, so offer
+     * it back the first time the editor opens. Autosaves of editors still
+     * open are not offered.
+     */
+    private void recover() {
+        try {
+            Path leftover = Autosave.findLeftover();
+            if (leftover == null) {
+                return;
+            }
+            int answer = JOptionPane.showConfirmDialog(this,
+                    "Recover the drawing which was not saved?", "Recover",
+                    JOptionPane.YES_NO_OPTION);
+            if (answer == JOptionPane.YES_OPTION) {
+                loadGraph(BoardFile.read(leftover));
+                autosave.resume(leftover);
+            } else {
+                Autosave.deleteLeftover(leftover);
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /*
+     * Wait for a save off the event dispatch thread, and tell the user if it
+     * failed.
+     */
+    private void reportFailure(final Future<?> save, final String target) {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                save.get();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause() instanceof ExecutionException
+                            ? ex.getCause().getCause() : ex.getCause();
+                    JOptionPane.showMessageDialog(FrameDraw.this,
+                            "Could not save " + target + ":\n" + cause,
+                            "Save", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
     public void loadGraph(Graph graph) {
@@ -314,10 +391,8 @@ public class FrameDraw extends JInternalFrame {
         if (jFileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
             file = jFileChooser.getSelectedFile().getAbsoluteFile().toString();
             try {
-                ObjectInputStream in = new ObjectInputStream(
-                        new FileInputStream(file));
-                loadGraph((Graph) in.readObject());
-            } catch (IOException | ClassNotFoundException ex) {
+                loadGraph(BoardFormats.read(Paths.get(file)));
+            } catch (IOException ex) {
                 ex.printStackTrace();
             }
         }
@@ -327,15 +402,7 @@ public class FrameDraw extends JInternalFrame {
         if (file == null) {
             jMenuItemSaveAsActionPerformed(evt);
         } else {
-            try {
-                ObjectOutputStream out = new ObjectOutputStream(
-                        new FileOutputStream(file));
-                out.writeObject(jPanelCanvas.getGraph());
-            } catch (FileNotFoundException ex) {
-                ex.printStackTrace();
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
+            reportFailure(autosave.saveTo(Paths.get(file)), file);
         }
     }//GEN-LAST:event_jMenuItemSaveActionPerformed
 
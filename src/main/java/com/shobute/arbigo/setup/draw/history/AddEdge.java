@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
+
+/**
+ * Add an edge between two nodes which were not already joined.
+ *
+ * @author Ben Lloyd
+ */
+public class AddEdge implements Command {
+
+    private final Node a, b;
+
+    /**
+     * @param a One end of the edge.
+     * @param b The other end.
+     */
+    public AddEdge(Node a, Node b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    @Override
+    public void apply(Graph graph) {
+        graph.addEdge(a, b);
+    }
+
+    @Override
+    public void revert(Graph graph) {
+        graph.removeEdge(a, b);
+    }
+
+    @Override
+    public int size() {
+        return 1;
+    }
+
+}
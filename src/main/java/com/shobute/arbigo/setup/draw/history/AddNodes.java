@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
+import java.util.Collection;
+
+/**
+ * Add new nodes without any edges, such as a single click or a paste.
+ *
+ * @author Ben Lloyd
+ */
+public class AddNodes implements Command {
+
+    private final Node[] nodes;
+
+    /**
+     * @param nodes The nodes to add, which are not yet in the graph.
+     */
+    public AddNodes(Collection<Node> nodes) {
+        this.nodes = nodes.toArray(new Node[nodes.size()]);
+    }
+
+    @Override
+    public void apply(Graph graph) {
+        for (Node node : nodes) {
+            node.getAdjacentNodes().clear();
+            graph.addNode(node);
+        }
+    }
+
+    @Override
+    public void revert(Graph graph) {
+        for (Node node : nodes) {
+            graph.detachNode(node);
+        }
+    }
+
+    @Override
+    public int size() {
+        return nodes.length;
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+
+/**
+ * A reversible edit to a graph. Commands hold the nodes they change, so
+ * they can be applied and reverted in a time proportional to the edit.
+ *
+ * @author Ben Lloyd
+ */
+public interface Command {
+
+    /**
+     * Make the edit, or make it again after it has been reverted.
+     *
+     * @param graph The graph in the state before the edit.
+     */
+    void apply(Graph graph);
+
+    /**
+     * Undo the edit.
+     *
+     * @param graph The graph in the state after the edit.
+     */
+    void revert(Graph graph);
+
+    /**
+     * Get a measure of the memory the command holds on to.
+     *
+     * @return The number of nodes and edges it refers to.
+     */
+    int size();
+
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The undo history of a drawing, kept as a log of commands rather than a
+ * copy of the graph for every edit.
+ * <p>
+ * Every so often a compact snapshot of the graph is taken, and commands
+ * older than the snapshot before it are dropped, so memory stays in
+ * proportion to the board. Undoing past the oldest command steps back
+ * through the remaining snapshots instead.
+ *
+ * @author Ben Lloyd
+ */
+public class History {
+
+    private static final int MIN_SPACING = 1024;
+    private static final int MAX_SNAPSHOTS = 8;
+
+    private final int minSpacing;
+    private final int maxSnapshots;
+    private final List<Command> commands;
+    private final TreeMap<Integer, Snapshot> snapshots;
+    private int first, position;
+    private long weight;
+
+    /**
+     * Start a history at a graph.
+     *
+     * @param graph The graph before any edits.
+     */
+    public History(Graph graph) {
+        this(graph, MIN_SPACING, MAX_SNAPSHOTS);
+    }
+
+    History(Graph graph, int minSpacing, int maxSnapshots) {
+        this.minSpacing = minSpacing;
+        this.maxSnapshots = maxSnapshots;
+        commands = new ArrayList<>();
+        snapshots = new TreeMap<>();
+        snapshots.put(0, new Snapshot(graph));
+    }
+
+    /**
+     * Record an edit which has been made to the graph. Anything which could
+     * have been redone is forgotten.
+     *
+     * @param command The edit.
+     * @param graph The graph after the edit.
+     */
+    public void record(Command command, Graph graph) {
+        if (position < first) {
+            commands.clear();
+            first = position;
+        } else {
+            commands.subList(position - first, commands.size()).clear();
+        }
+        snapshots.tailMap(position, false).clear();
+        commands.add(command);
+        position++;
+        weight += command.size();
+
+        // Snapshots cost as much as the board, so they are spaced out by at
+        // least that much editing.
+        if (weight >= Math.max(minSpacing, graph.getNodes().size())) {
+            Integer previous = snapshots.floorKey(position);
+            snapshots.put(position, new Snapshot(graph));
+            weight = 0;
+            if (previous != null && previous > first) {
+                commands.subList(0, previous - first).clear();
+                first = previous;
+            }
+            while (snapshots.size() > maxSnapshots) {
+                snapshots.pollFirstEntry();
+            }
+        }
+    }
+
+    /**
+     * Step back one edit, or to the previous snapshot beyond the oldest
+     * command.
+     *
+     * @param graph The current graph.
+     * @return The graph as it was, which is a new graph if it came from a
+     * snapshot.
+     */
+    public Graph undo(Graph graph) {
+        if (position > first) {
+            commands.get(--position - first).revert(graph);
+            return graph;
+        }
+        Integer key = snapshots.lowerKey(position);
+        if (key == null) {
+            return graph;
+        }
+        position = key;
+        return snapshots.get(key).restore();
+    }
+
+    /**
+     * Step forward one edit, or to the next snapshot before the oldest
+     * command.
+     *
+     * @param graph The current graph.
+     * @return The graph as it was, which is a new graph if it came from a
+     * snapshot.
+     */
+    public Graph redo(Graph graph) {
+        if (position >= first && position < first + commands.size()) {
+            commands.get(position++ - first).apply(graph);
+            return graph;
+        }
+        Integer key = snapshots.higherKey(position);
+        if (key == null || position >= first) {
+            return graph;
+        }
+        position = key;
+        return snapshots.get(key).restore();
+    }
+
+    /**
+     * @return True if there is anything to undo.
+     */
+    public boolean canUndo() {
+        return position > first || snapshots.lowerKey(position) != null;
+    }
+
+    /**
+     * @return True if there is anything to redo.
+     */
+    public boolean canRedo() {
+        return position < first + commands.size();
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Get a measure of the memory the history holds on to.
+     *
+     * @return The number of nodes and edges its commands and snapshots
+     * refer to.
+     */
+    public long size() {
+        long size = 0;
+        for (Command command : commands) {
+            size += command.size();
+        }
+        for (Snapshot snapshot : snapshots.values()) {
+            size += snapshot.size();
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
+import java.awt.Point;
+
+/**
+ * Move nodes, each from one point to another. Snapping to the grid can move
+ * nodes by different amounts, so both ends of every move are kept.
+ *
+ * @author Ben Lloyd
+ */
+public class MoveNodes implements Command {
+
+    private final Node[] nodes;
+    private final Point[] from, to;
+
+    /**
+     * Remember moves which have already been made.
+     *
+     * @param nodes The nodes which moved.
+     * @param from Where each node started.
+     */
+    public MoveNodes(Node[] nodes, Point[] from) {
+        this.nodes = nodes;
+        this.from = from;
+        to = new Point[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            to[i] = nodes[i].getLocation();
+        }
+    }
+
+    /**
+     * Check whether any node ended up somewhere else.
+     *
+     * @return True if the moves change the graph.
+     */
+    public boolean isMoved() {
+        for (int i = 0; i < nodes.length; i++) {
+            if (!from[i].equals(to[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void apply(Graph graph) {
+        for (int i = 0; i < nodes.length; i++) {
+            graph.moveNode(nodes[i], to[i]);
+        }
+    }
+
+    @Override
+    public void revert(Graph graph) {
+        for (int i = 0; i < nodes.length; i++) {
+            graph.moveNode(nodes[i], from[i]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return nodes.length;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
+import java.util.Collection;
+
+/**
+ * Remove nodes along with their edges.
+ *
+ * @author Ben Lloyd
+ */
+public class RemoveNodes implements Command {
+
+    private final Node[] nodes;
+    private final Node[] from, to;
+
+    /**
+     * Remember the edges of some nodes, which must still be in the graph.
+     *
+     * @param nodes The nodes to remove.
+     */
+    public RemoveNodes(Collection<Node> nodes) {
+        this.nodes = nodes.toArray(new Node[nodes.size()]);
+        int edges = 0;
+        for (Node node : this.nodes) {
+            edges += node.getAdjacentNodes().size();
+        }
+        from = new Node[edges];
+        to = new Node[edges];
+        int i = 0;
+        for (Node node : this.nodes) {
+            for (Node adjacent : node.getAdjacentNodes()) {
+                from[i] = node;
+                to[i++] = adjacent;
+            }
+        }
+    }
+
+    @Override
+    public void apply(Graph graph) {
+        for (Node node : nodes) {
+            graph.detachNode(node);
+        }
+    }
+
+    @Override
+    public void revert(Graph graph) {
+        for (Node node : nodes) {
+            node.getAdjacentNodes().clear();
+            graph.addNode(node);
+        }
+        for (int i = 0; i < from.length; i++) {
+            graph.addEdge(from[i], to[i]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return nodes.length + from.length;
+    }
+
+}
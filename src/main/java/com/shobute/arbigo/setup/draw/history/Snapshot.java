@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A compact copy of a graph, kept in flat arrays. It refers to the original
+ * nodes rather than copies, so commands recorded around it still apply to
+ * the graph it restores.
+ *
+ * @author Ben Lloyd
+ */
+class Snapshot {
+
+    private final Node[] nodes;
+    private final int[] xs, ys;
+    private final int[] offsets, neighbours;
+    private final Color colour;
+
+    Snapshot(Graph graph) {
+        int n = graph.getNodes().size();
+        nodes = graph.getNodes().toArray(new Node[n]);
+        xs = new int[n];
+        ys = new int[n];
+        offsets = new int[n + 1];
+        Map<Node, Integer> ids = new IdentityHashMap<>();
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            ids.put(nodes[i], i);
+            xs[i] = nodes[i].x;
+            ys[i] = nodes[i].y;
+            m += nodes[i].getAdjacentNodes().size();
+        }
+        int[] edges = new int[m];
+        m = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = m;
+            for (Node adjacent : nodes[i].getAdjacentNodes()) {
+                Integer id = ids.get(adjacent);
+                if (id != null) {
+                    edges[m++] = id;
+                }
+            }
+        }
+        offsets[n] = m;
+        neighbours = m == edges.length ? edges : Arrays.copyOf(edges, m);
+        colour = graph.getColour();
+    }
+
+    /**
+     * Put the nodes back where they were, with the edges they had, in a new
+     * graph.
+     *
+     * @return The graph as it was.
+     */
+    Graph restore() {
+        Graph graph = new Graph();
+        graph.setColour(colour);
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            node.getAdjacentNodes().clear();
+            node.setLocation(xs[i], ys[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                nodes[i].addAdjacentNode(nodes[neighbours[j]]);
+            }
+            graph.addNode(nodes[i]);
+        }
+        return graph;
+    }
+
+    int size() {
+        return nodes.length + neighbours.length;
+    }
+
+}
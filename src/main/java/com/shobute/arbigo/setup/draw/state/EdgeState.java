@@ -25,13 +25,16 @@ package com.shobute.arbigo.setup.draw.state;
 
 import com.shobute.arbigo.setup.draw.Canvas;
 import com.shobute.arbigo.common.Node;
+import com.shobute.arbigo.setup.draw.history.AddEdge;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Line2D;
+import java.util.Arrays;
 
 /**
  *
@@ -58,32 +61,47 @@ public class EdgeState extends MouseAdapter implements State {
         }
     }
 
+    private void repaintLine() {
+        if (node != null && clicked != null) {
+            Rectangle area = new Rectangle(node);
+            area.add(clicked);
+            canvas.repaintArea(area);
+        }
+    }
+
     @Override
     public void mouseClicked(MouseEvent me) {
+        repaintLine();
         if (previousNode != null && node != null && previousNode != node) {
-            node.addAdjacentNode(previousNode);
-            previousNode.addAdjacentNode(node);
+            if (!node.getAdjacentNodes().contains(previousNode)) {
+                canvas.execute(new AddEdge(node, previousNode));
+            }
+            canvas.repaintNodes(Arrays.asList(node, previousNode));
             previousNode = null;
-            canvas.checkpoint();
         } else {
             node = canvas.getGraph().nodeAt(pressed, 10);
         }
+        repaintLine();
     }
 
     @Override
     public void mouseMoved(MouseEvent me) {
+        repaintLine();
         if (canvas.getGrid()) {
             clicked = canvas.getGraph().closestOnGrid(me.getPoint());
         } else {
             clicked = me.getPoint();
         }
+        repaintLine();
     }
 
     @Override
     public void mousePressed(MouseEvent me) {
+        repaintLine();
         pressed = me.getPoint();
         previousNode = node;
         node = canvas.getGraph().nodeAt(pressed, 10);
+        repaintLine();
     }
 
 }
@@ -23,13 +23,18 @@
  */
 package com.shobute.arbigo.setup.draw.state;
 
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
 import com.shobute.arbigo.setup.draw.Canvas;
+import com.shobute.arbigo.setup.draw.history.AddNodes;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Ellipse2D;
+import java.util.Collections;
 
 /**
  *
@@ -54,20 +59,25 @@ public class NodeState extends MouseAdapter implements State {
 
     @Override
     public void mouseClicked(MouseEvent me) {
+        Graph graph = canvas.getGraph();
         Point point = me.getPoint();
         if (canvas.getGrid()) {
-            point = canvas.getGraph().closestOnGrid(point);
+            point = graph.closestOnGrid(point);
         }
-        canvas.getGraph().addNode(point);
-        canvas.checkpoint();
+        if (graph.nodeAt(point, graph.getNodeSize()) == null) {
+            canvas.execute(new AddNodes(Collections.singleton(new Node(point))));
+        }
+        canvas.repaintArea(new Rectangle(point));
     }
 
     @Override
     public void mouseMoved(MouseEvent me) {
+        canvas.repaintArea(new Rectangle(pointer));
         pointer = me.getPoint();
         if (canvas.getGrid()) {
             pointer = canvas.getGraph().closestOnGrid(pointer);
         }
+        canvas.repaintArea(new Rectangle(pointer));
     }
 
 }
@@ -24,10 +24,13 @@
 package com.shobute.arbigo.setup.draw.state;
 
 import com.shobute.arbigo.setup.draw.Canvas;
+import com.shobute.arbigo.common.Graph;
 import com.shobute.arbigo.common.Node;
+import com.shobute.arbigo.setup.draw.history.MoveNodes;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
@@ -44,6 +47,8 @@ public class SelectState extends MouseAdapter implements State {
     private final Canvas canvas;
     private Point drag, point;
     private Node currentNode;
+    private Node[] moving;
+    private Point[] from;
 
     public SelectState(Canvas canvas) {
         this.canvas = canvas;
@@ -63,19 +68,40 @@ public class SelectState extends MouseAdapter implements State {
         }
     }
 
+    private void repaintSelection() {
+        if (drag != null) {
+            Rectangle area = new Rectangle(point);
+            area.add(drag);
+            canvas.repaintArea(area);
+        }
+    }
+
     @Override
     public void mouseDragged(MouseEvent me) {
         if (canvas.getSelectedNodes().isEmpty()) {
+            repaintSelection();
             drag = me.getPoint();
+            repaintSelection();
         } else {
+            if (moving == null) {
+                moving = canvas.getSelectedNodes().toArray(new Node[0]);
+                from = new Point[moving.length];
+                for (int i = 0; i < moving.length; i++) {
+                    from[i] = moving[i].getLocation();
+                }
+            }
             int dx = me.getPoint().x - currentNode.x;
             int dy = me.getPoint().y - currentNode.y;
+            Graph graph = canvas.getGraph();
+            canvas.repaintNodes(canvas.getSelectedNodes());
             for (Node node : canvas.getSelectedNodes()) {
-                node.translate(dx, dy);
+                Point moved = new Point(node.x + dx, node.y + dy);
                 if (canvas.getGrid()) {
-                    node.setLocation(canvas.getGraph().closestOnGrid(node));
+                    moved = graph.closestOnGrid(moved);
                 }
+                graph.moveNode(node, moved);
             }
+            canvas.repaintNodes(canvas.getSelectedNodes());
         }
     }
 
@@ -88,6 +114,7 @@ public class SelectState extends MouseAdapter implements State {
             if (currentNode != null) {
                 canvas.getSelectedNodes().add(currentNode);
                 currentNode.setColour(Color.BLUE);
+                canvas.repaintNodes(canvas.getSelectedNodes());
             }
         }
     }
@@ -96,7 +123,9 @@ public class SelectState extends MouseAdapter implements State {
     public void mouseReleased(MouseEvent me) {
         if (drag != null) {
             canvas.unSelectNodes();
-            for (Node node : canvas.getGraph().getNodes()) {
+            Rectangle bounds = new Rectangle(point);
+            bounds.add(drag);
+            for (Node node : canvas.getGraph().nodesIn(bounds)) {
                 int x = node.x;
                 int y = node.y;
                 if (x > min(point.x, drag.x) && y > min(point.y, drag.y)
@@ -105,9 +134,15 @@ public class SelectState extends MouseAdapter implements State {
                     canvas.getSelectedNodes().add(node);
                 }
             }
+            repaintSelection();
             drag = null;
-        } else if (!canvas.getSelectedNodes().isEmpty()) {
-            canvas.checkpoint();
+        } else if (moving != null) {
+            MoveNodes move = new MoveNodes(moving, from);
+            if (move.isMoved()) {
+                canvas.record(move);
+            }
+            moving = null;
+            from = null;
         }
     }
 
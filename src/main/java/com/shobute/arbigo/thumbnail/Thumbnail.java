@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.thumbnail;
+
+import com.shobute.arbigo.common.Colour;
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.MappedBoard;
+import com.shobute.arbigo.common.Node;
+import com.shobute.arbigo.common.Stone;
+import com.shobute.arbigo.engine.GameState;
+import com.shobute.arbigo.engine.Position;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws boards and game positions into images without needing a display.
+ *
+ * @author Ben Lloyd
+ */
+public final class Thumbnail {
+
+    private static final Stone[] stones = new Stone[Colour.colours.length];
+
+    static {
+        for (int i = 0; i < stones.length; i++) {
+            stones[i] = new Stone(Colour.colours[i]);
+        }
+    }
+
+    private Thumbnail() {
+    }
+
+    /**
+     * Draw a board.
+     *
+     * @param graph The board to draw.
+     * @param size The width and height of the image in pixels.
+     * @return A new image with the board fitted inside it.
+     */
+    public static BufferedImage render(Graph graph, int size) {
+        return render(graph, null, size);
+    }
+
+    /**
+     * Draw a board with the stones of a game on it.
+     *
+     * @param graph The board to draw.
+     * @param state The game played on the board, or null for no stones.
+     * @param size The width and height of the image in pixels.
+     * @return A new image with the board fitted inside it.
+     */
+    public static BufferedImage render(Graph graph, GameState state, int size) {
+        BufferedImage image = createImage(size);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+
+        if (!graph.getNodes().isEmpty()) {
+            int r = graph.getShortestRadius();
+            Dimension graphSize = graph.getSize();
+            double scaleFactor = Math.min(
+                    size / (graphSize.getWidth() + 2.0 * r),
+                    size / (graphSize.getHeight() + 2.0 * r));
+            graph.scale(g2d, scaleFactor);
+            graph.paintEdges(g2d, graph.getBounds());
+            graph.paintNodes(g2d, graph.getBounds());
+            if (state != null) {
+                paintStones(g2d, state, r);
+            }
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * Draw a memory-mapped board without building a graph of it.
+     *
+     * @param board The board to draw.
+     * @param size The width and height of the image in pixels.
+     * @return A new image with the board fitted inside it.
+     */
+    public static BufferedImage render(MappedBoard board, int size) {
+        BufferedImage image = createImage(size);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+
+        Rectangle bounds = board.getBounds();
+        if (bounds != null) {
+            int r = board.getShortestRadius();
+            double scaleFactor = Math.min(size / (bounds.getWidth() + 2.0 * r),
+                    size / (bounds.getHeight() + 2.0 * r));
+            g2d.scale(scaleFactor, scaleFactor);
+            g2d.translate(r - bounds.x, r - bounds.y);
+            board.paintEdges(g2d);
+            board.paintNodes(g2d);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    private static BufferedImage createImage(int size) {
+        BufferedImage image = new BufferedImage(size, size,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, size, size);
+        g2d.dispose();
+        return image;
+    }
+
+    private static void paintStones(Graphics2D g2d, GameState state, int r) {
+        Position position = state.getPosition();
+        long[] occupied = position.getOccupied();
+        for (int word = 0; word < occupied.length; word++) {
+            long bits = occupied[word];
+            while (bits != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                Node node = state.getNode(id);
+                stones[position.getColour(id)].paint(g2d, node.x, node.y, r,
+                        220);
+            }
+        }
+    }
+
+}
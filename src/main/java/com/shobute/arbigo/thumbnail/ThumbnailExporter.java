@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.thumbnail;
+
+import com.shobute.arbigo.common.BoardFile;
+import com.shobute.arbigo.common.MappedBoard;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Writes PNG thumbnails of board files, many at a time. Files are handed to a
+ * fixed pool of workers through a short queue, and the submitting thread
+ * renders files itself while the queue is full, so only a few boards and
+ * images are ever in memory at once however many files there are.
+ *
+ * @author Ben Lloyd
+ */
+public class ThumbnailExporter {
+
+    private final Path outputDirectory;
+    private final int size;
+    private final int threads;
+
+    /**
+     * Create an exporter.
+     *
+     * @param outputDirectory Where to write the images.
+     * @param size The width and height of each image in pixels.
+     * @param threads The number of files to render at once.
+     */
+    public ThumbnailExporter(Path outputDirectory, int size, int threads) {
+        this.outputDirectory = outputDirectory;
+        this.size = size;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Render board files, writing each to a PNG named after it in the output
+     * directory.
+     *
+     * @param files The board files.
+     * @return The files which could not be read or written.
+     * @throws IOException If the output directory cannot be created.
+     * @throws InterruptedException If interrupted while waiting for workers.
+     */
+    public List<Path> export(List<Path> files) throws IOException,
+            InterruptedException {
+        Files.createDirectories(outputDirectory);
+        final List<Path> failed = Collections.synchronizedList(
+                new ArrayList<Path>());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (final Path file : files) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            export(file);
+                        } catch (IOException | RuntimeException ex) {
+                            System.err.println(file + ": " + ex);
+                            failed.add(file);
+                        }
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        return failed;
+    }
+
+    private void export(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        Path output = outputDirectory.resolve(name + ".png");
+        BufferedImage image = BoardFile.isLegacy(file)
+                ? Thumbnail.render(BoardFile.readLegacy(file), size)
+                : Thumbnail.render(MappedBoard.open(file), size);
+        if (!ImageIO.write(image, "png", output.toFile())) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    /**
+     * Render board files from the command line, without a display.
+     *
+     * @param args [-size pixels] [-threads count] output-directory then board
+     * files or directories of them.
+     * @throws Exception If the output directory cannot be created.
+     */
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        int size = 256;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int i = 0;
+        while (i + 1 < args.length && args[i].startsWith("-")) {
+            if (args[i].equals("-size")) {
+                size = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else {
+                break;
+            }
+            i += 2;
+        }
+        if (args.length - i < 2) {
+            System.err.println("Usage: ThumbnailExporter [-size pixels] "
+                    + "[-threads count] output-directory board-file...");
+            System.exit(2);
+        }
+
+        Path output = Paths.get(args[i++]);
+        List<Path> files = new ArrayList<>();
+        for (; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if (Files.isDirectory(path)) {
+                try (DirectoryStream<Path> dir = Files.newDirectoryStream(path)) {
+                    for (Path file : dir) {
+                        if (Files.isRegularFile(file)) {
+                            files.add(file);
+                        }
+                    }
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        List<Path> failed = new ThumbnailExporter(output, size, threads)
+                .export(files);
+        System.out.println((files.size() - failed.size()) + " of "
+                + files.size() + " boards exported");
+        System.exit(failed.isEmpty() ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.archive;
+
+import com.shobute.arbigo.common.FrozenGraph;
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.engine.RulesEngine;
+import com.shobute.arbigo.record.GameRecordReader;
+import com.shobute.arbigo.record.GameRecordWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class GameArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FrozenGraph small = new Graph(3).freeze();
+    private final FrozenGraph large = new Graph(5).freeze();
+    private Path directory;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath().resolve("archive");
+    }
+
+    private byte[] record(FrozenGraph graph, long seed) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.delete(file);
+        RulesEngine engine = new RulesEngine(graph);
+        Random random = new Random(seed);
+        try (GameRecordWriter writer = new GameRecordWriter(file, graph, 2,
+                30)) {
+            for (int i = 0; i < 20; i++) {
+                int node = random.nextInt(graph.size());
+                if (engine.play(node, i % 2)) {
+                    writer.move(node, i % 2, 30);
+                }
+            }
+        }
+        return Files.readAllBytes(file);
+    }
+
+    private int segmentCount() throws IOException {
+        int segments = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "segment-*.dat")) {
+            for (Path file : files) {
+                segments++;
+            }
+        }
+        return segments;
+    }
+
+    @Test
+    public void testStore() throws IOException, InterruptedException,
+            ExecutionException {
+        List<byte[]> records = new ArrayList<>();
+        try (GameArchive archive = new GameArchive(directory, 512)) {
+            for (int i = 0; i < 30; i++) {
+                byte[] record = record(i % 3 == 0 ? small : large, i);
+                records.add(record);
+                assertEquals(i, archive.add(record));
+            }
+            assertTrue(segmentCount() > 2);
+            for (int i = 0; i < 30; i++) {
+                assertArrayEquals(records.get(i), archive.get(i));
+            }
+            assertEquals(10, archive.games(small.getContentHash()).length);
+            assertEquals(20, archive.games(large.getContentHash()).length);
+            assertNull(archive.get(30));
+
+            final List<Integer> visited = new ArrayList<>();
+            archive.scan(small.getContentHash(), new GameArchive.Visitor() {
+                @Override
+                public boolean visit(int id, GameRecordReader record)
+                        throws IOException {
+                    record.replay(new RulesEngine(small));
+                    visited.add(id);
+                    return true;
+                }
+            });
+            assertEquals(10, visited.size());
+            assertEquals(Integer.valueOf(27), visited.get(9));
+
+            int segments = segmentCount();
+            for (int i = 0; i < 30; i += 2) {
+                assertTrue(archive.remove(i));
+            }
+            assertFalse(archive.remove(0));
+            archive.compact().get();
+            assertTrue(segmentCount() < segments);
+            assertEquals(15, archive.size());
+            for (int i = 0; i < 30; i++) {
+                assertArrayEquals(i % 2 == 0 ? null : records.get(i),
+                        archive.get(i));
+            }
+            assertEquals(30, archive.add(records.get(0)));
+        }
+
+        try (GameArchive archive = new GameArchive(directory, 512)) {
+            assertEquals(16, archive.size());
+            assertNull(archive.get(2));
+            assertArrayEquals(records.get(3), archive.get(3));
+            assertArrayEquals(records.get(0), archive.get(30));
+            assertEquals(31, archive.add(records.get(1)));
+        }
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        byte[] first = record(small, 1);
+        byte[] second = record(large, 2);
+        try (GameArchive archive = new GameArchive(directory)) {
+            archive.add(first);
+            archive.add(second);
+        }
+
+        // Lose the last index entry, and leave a torn entry in the segment.
+        Path index = directory.resolve("index.dat");
+        try (FileChannel channel = FileChannel.open(index,
+                StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - GameArchive.INDEX_ENTRY / 2);
+        }
+        try (FileChannel channel = FileChannel.open(
+                directory.resolve("segment-000000.dat"),
+                StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[GameArchive.ENTRY_HEADER]));
+        }
+
+        try (GameArchive archive = new GameArchive(directory)) {
+            assertEquals(2, archive.size());
+            assertArrayEquals(first, archive.get(0));
+            assertArrayEquals(second, archive.get(1));
+            assertEquals(2, archive.add(first));
+            assertArrayEquals(first, archive.get(2));
+        }
+    }
+
+    @Test
+    public void testCompactCrash() throws IOException, InterruptedException,
+            ExecutionException {
+        List<byte[]> records = new ArrayList<>();
+        Path saved = folder.newFolder().toPath();
+        try (GameArchive archive = new GameArchive(directory, 512)) {
+            for (int i = 0; i < 12; i++) {
+                records.add(record(large, i));
+                archive.add(records.get(i));
+            }
+            archive.remove(0);
+            archive.remove(2);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                    directory, "segment-*.dat")) {
+                for (Path file : files) {
+                    Files.copy(file, saved.resolve(file.getFileName()));
+                }
+            }
+            archive.compact().get();
+        }
+
+        // Crash after the index was rewritten, before the old segments were
+        // deleted.
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(saved)) {
+            for (Path file : files) {
+                Path target = directory.resolve(file.getFileName());
+                if (!Files.exists(target)) {
+                    Files.copy(file, target);
+                }
+            }
+        }
+
+        try (GameArchive archive = new GameArchive(directory, 512)) {
+            assertEquals(10, archive.size());
+            assertNull(archive.get(0));
+            assertNull(archive.get(2));
+            for (int i = 3; i < 12; i++) {
+                assertArrayEquals(records.get(i), archive.get(i));
+            }
+            assertEquals(12, archive.add(records.get(0)));
+        }
+        try (GameArchive archive = new GameArchive(directory, 512)) {
+            assertEquals(11, archive.size());
+            assertArrayEquals(records.get(0), archive.get(12));
+        }
+    }
+
+    @Test
+    public void testReopenAfterCompact() throws IOException,
+            InterruptedException, ExecutionException {
+        byte[] record = record(large, 1);
+        try (GameArchive archive = new GameArchive(directory, 512)) {
+            for (int i = 0; i < 12; i++) {
+                archive.add(record);
+            }
+            // The live games are copied to the newest segments, which are
+            // then retired in turn.
+            for (int i = 0; i < 12; i += 2) {
+                archive.remove(i);
+            }
+            archive.compact().get();
+            for (int i = 1; i < 12; i += 2) {
+                archive.remove(i);
+            }
+            archive.compact().get();
+        }
+
+        try (GameArchive archive = new GameArchive(directory, 512)) {
+            assertEquals(0, archive.size());
+            assertEquals(12, archive.add(record));
+            assertArrayEquals(record, archive.get(12));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalid() throws IOException {
+        try (GameArchive archive = new GameArchive(directory)) {
+            archive.add(new byte[]{1, 2, 3});
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Point;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.*;
+
+/**
+ * Compares boards by their node positions, edges and colour, for the tests
+ * of the board file formats.
+ *
+ * @author Ben Lloyd
+ */
+final class BoardAssert {
+
+    private BoardAssert() {
+    }
+
+    static Set<Point> points(Collection<Node> nodes) {
+        Set<Point> points = new HashSet<>();
+        for (Node node : nodes) {
+            points.add(new Point(node));
+        }
+        return points;
+    }
+
+    static void assertSameBoard(Graph expected, Graph actual) {
+        assertEquals(points(expected.getNodes()), points(actual.getNodes()));
+        for (Node node : expected.getNodes()) {
+            Node other = actual.nodeAt(node, 1);
+            assertEquals(points(node.getAdjacentNodes()),
+                    points(other.getAdjacentNodes()));
+        }
+        assertEquals(expected.getColour(), actual.getColour());
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static com.shobute.arbigo.common.BoardAssert.assertSameBoard;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class BoardFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Graph graph = new Graph(9);
+        graph.setColour(new Color(10, 20, 30, 40));
+        Path file = folder.getRoot().toPath().resolve("board" + BoardFile.EXTENSION);
+        BoardFile.write(graph, file);
+        assertFalse(BoardFile.isLegacy(file));
+        assertSameBoard(graph, BoardFile.read(file));
+
+        // Writing is deterministic.
+        byte[] first = Files.readAllBytes(file);
+        BoardFile.write(BoardFile.read(file), file);
+        assertArrayEquals(first, Files.readAllBytes(file));
+
+        // Larger than one buffer.
+        Graph large = new Graph(150);
+        BoardFile.write(large, file);
+        assertEquals(large.getNodes().size(), BoardFile.read(file).getNodes().size());
+
+        BoardFile.write(new Graph(), file);
+        assertTrue(BoardFile.read(file).getNodes().isEmpty());
+    }
+
+    @Test
+    public void testLegacy() throws IOException {
+        Graph graph = new Graph(5);
+        Path legacy = folder.getRoot().toPath().resolve("board.ser");
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                Files.newOutputStream(legacy))) {
+            out.writeObject(graph);
+        }
+        assertTrue(BoardFile.isLegacy(legacy));
+        assertSameBoard(graph, BoardFile.read(legacy));
+
+        BoardFile.main(new String[]{legacy.toString()});
+        Path converted = legacy.resolveSibling("board" + BoardFile.EXTENSION);
+        assertFalse(BoardFile.isLegacy(converted));
+        assertSameBoard(graph, BoardFile.read(converted));
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("board" + BoardFile.EXTENSION);
+        BoardFile.write(new Graph(3), file);
+        byte[] valid = Files.readAllBytes(file);
+
+        byte[] corrupt = valid.clone();
+        corrupt[BoardFile.HEADER_BYTES + 2] ^= 1;
+        assertUnreadable(file, corrupt);
+
+        assertUnreadable(file, Arrays.copyOf(valid, valid.length - 1));
+
+        byte[] newer = valid.clone();
+        ByteBuffer.wrap(newer).putInt(4, (BoardFile.VERSION + 1) << 16);
+        assertUnreadable(file, newer);
+
+        byte[] text = "not a board".getBytes("US-ASCII");
+        assertUnreadable(file, text);
+    }
+
+    private static void assertUnreadable(Path file, byte[] bytes)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(bytes));
+        }
+        try {
+            BoardFile.read(file);
+            fail("Read an invalid board file");
+        } catch (IOException ex) {
+        }
+    }
+
+}
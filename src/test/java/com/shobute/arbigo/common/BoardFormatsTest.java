@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static com.shobute.arbigo.common.BoardAssert.assertSameBoard;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class BoardFormatsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String name, String text) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Graph graph = new Graph(7);
+        graph.setColour(new Color(10, 20, 30, 40));
+        for (String extension : new String[]{EdgeListFile.EXTENSION,
+            GraphMLFile.EXTENSION, BoardFile.EXTENSION}) {
+            Path file = folder.getRoot().toPath().resolve("board" + extension);
+            BoardFormats.write(graph, file);
+            assertSameBoard(graph, BoardFormats.read(file));
+        }
+    }
+
+    @Test
+    public void testLarge() throws IOException {
+        Graph graph = new Graph(200);
+        Path edges = folder.getRoot().toPath().resolve("large.edges");
+        Path graphml = folder.getRoot().toPath().resolve("large.graphml");
+        EdgeListFile.write(graph, edges);
+        GraphMLFile.write(graph, graphml);
+        FrozenGraph expected = graph.freeze();
+        for (Path file : new Path[]{edges, graphml}) {
+            FrozenGraph actual = BoardFormats.read(file).freeze();
+            assertArrayEquals(expected.getContentHash(),
+                    actual.getContentHash());
+        }
+    }
+
+    @Test
+    public void testReadEdgeList() throws IOException {
+        Path file = write("board.txt", "# made by a script\n"
+                + "\n"
+                + "e 0 1\n"
+                + "v 0.4, -10.6\r\n"
+                + "v\t1e2 5   # trailing comment\n"
+                + "e 1 2\n"
+                + "v 200 0\n"
+                + "c 80ff0000\n");
+        Graph graph = BoardFormats.read(file);
+        assertEquals(3, graph.getNodes().size());
+        Node first = graph.nodeAt(new Point(0, -11), 1);
+        assertNotNull(first);
+        assertEquals(1, first.getAdjacentNodes().size());
+        assertEquals(2, graph.nodeAt(new Point(100, 5), 1)
+                .getAdjacentNodes().size());
+        assertEquals(new Color(255, 0, 0, 128), graph.getColour());
+    }
+
+    @Test
+    public void testReadGraphMLGeometry() throws IOException {
+        Path file = write("yed.graphml", "<?xml version=\"1.0\"?>\n"
+                + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\""
+                + " xmlns:y=\"http://www.yworks.com/xml/graphml\">\n"
+                + "<key id=\"d0\" for=\"node\" yfiles.type=\"nodegraphics\"/>\n"
+                + "<graph edgedefault=\"undirected\">\n"
+                + "<edge source=\"b\" target=\"a\"/>\n"
+                + "<node id=\"a\"><data key=\"d0\"><y:ShapeNode>"
+                + "<y:Geometry x=\"-5\" y=\"-5\" width=\"10\" height=\"10\"/>"
+                + "</y:ShapeNode></data></node>\n"
+                + "<node id=\"b\"><data key=\"d0\"><y:ShapeNode>"
+                + "<y:Geometry x=\"95\" y=\"-5\" width=\"10\" height=\"10\"/>"
+                + "</y:ShapeNode></data></node>\n"
+                + "</graph></graphml>\n");
+        Graph graph = BoardFormats.read(file);
+        assertEquals(2, graph.getNodes().size());
+        assertTrue(graph.nodeAt(new Point(0, 0), 1).getAdjacentNodes()
+                .contains(graph.nodeAt(new Point(100, 0), 1)));
+    }
+
+    @Test
+    public void testInvalid() {
+        String[][] files = {
+            {"word.edges", "v 1 x\n"},
+            {"record.edges", "q 1 2\n"},
+            {"missing.edges", "v 0 0\ne 0 1\n"},
+            {"position.graphml", "<graphml><graph><node id=\"a\"/></graph></graphml>"},
+            {"edge.graphml", "<graphml><graph><edge source=\"a\" target=\"b\"/>"
+                + "</graph></graphml>"},
+            {"broken.graphml", "<graphml><graph>"},
+        };
+        for (String[] file : files) {
+            try {
+                BoardFormats.read(write(file[0], file[1]));
+                fail(file[0] + " was read");
+            } catch (IOException ex) {
+                // Expected.
+            }
+        }
+    }
+
+}
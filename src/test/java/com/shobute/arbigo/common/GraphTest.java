@@ -24,7 +24,14 @@
 package com.shobute.arbigo.common;
 
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.Dimension;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.lang.SerializationUtils;
 import org.junit.*;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -95,6 +102,191 @@ public class GraphTest {
         assertNotEquals(point, graph.closestOnGrid(new Point(g - d, g - d)));
     }
 
+    @Test
+    public void testFreeze() {
+        Node corner = graph.nodeAt(new Point(0, 0), 1);
+        Node centre = graph.nodeAt(new Point(100, 100), 1);
+        // A one way edge should still be undirected once frozen.
+        corner.addAdjacentNode(centre);
+
+        FrozenGraph frozen = graph.freeze();
+        assertEquals(9, frozen.size());
+        assertEquals(13, frozen.getEdgeCount());
+        assertEquals(0, frozen.getId(corner));
+        assertEquals(-1, frozen.getId(new Node(new Point())));
+        assertEquals(5, frozen.getDegree(frozen.getId(centre)));
+        assertEquals(3, frozen.getDegree(frozen.getId(corner)));
+
+        for (int id = 0; id < frozen.size(); id++) {
+            assertEquals(frozen.getNode(id).x, frozen.getX(id));
+            int[] offsets = frozen.getOffsets();
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                int adj = frozen.getNeighbours()[i];
+                assertTrue(frozen.getNode(adj).getAdjacentNodes()
+                        .contains(frozen.getNode(id))
+                        || frozen.getNode(id).getAdjacentNodes()
+                        .contains(frozen.getNode(adj)));
+            }
+        }
+
+        // Later changes to the graph do not affect the snapshot.
+        graph.removeNode(centre);
+        assertEquals(9, frozen.size());
+    }
+
+    @Test
+    public void testMoveNode() {
+        Node node = graph.nodeAt(new Point(0, 0), 1);
+        graph.moveNode(node, new Point(-500, 1000));
+        assertNull(graph.nodeAt(new Point(0, 0), 10));
+        assertSame(node, graph.nodeAt(new Point(-505, 1003), 10));
+
+        graph.removeNode(node);
+        assertNull(graph.nodeAt(new Point(-500, 1000), 10));
+        assertTrue(graph.addNode(new Point(0, 0)));
+        assertNotNull(graph.nodeAt(new Point(0, 0), 1));
+
+        // The index is rebuilt after a copy.
+        Graph copy = (Graph) SerializationUtils.clone(graph);
+        assertNotNull(copy.nodeAt(new Point(200, 200), 1));
+        assertNull(copy.nodeAt(new Point(-500, 1000), 10));
+    }
+
+    @Test
+    public void testNodeAtClosest() {
+        graph.addNode(new Node(new Point(112, 100)));
+        assertEquals(112, graph.nodeAt(new Point(107, 100), 10).x);
+        assertEquals(100, graph.nodeAt(new Point(105, 100), 10).x);
+    }
+
+    @Test(timeout = 1000)
+    public void testNodeAtSparse() {
+        Graph sparse = new Graph();
+        Node a = new Node(new Point(0, 0));
+        Node b = new Node(new Point(1000000, 0));
+        sparse.addNode(a);
+        sparse.addNode(b);
+        int radius = sparse.getShortestRadius();
+        assertSame(b, sparse.nodeAt(new Point(999990, 5), radius));
+        assertNull(sparse.nodeAt(new Point(500000, 0), radius));
+
+        Graph single = new Graph();
+        single.addNode(a);
+        assertSame(a, single.nodeAt(new Point(40, -40),
+                single.getShortestRadius()));
+    }
+
+    @Test
+    public void testNodesIn() {
+        assertEquals(9, graph.nodesIn(new Rectangle(0, 0, 200, 200)).size());
+        assertEquals(4, graph.nodesIn(new Rectangle(50, 50, 150, 150)).size());
+        assertEquals(1, graph.nodesIn(new Rectangle(-10, -10, 20, 20)).size());
+        assertTrue(graph.nodesIn(new Rectangle(10, 10, 80, 80)).isEmpty());
+        assertEquals(9, graph.nodesIn(
+                new Rectangle(-100000, -100000, 200000, 200000)).size());
+    }
+
+    @Test
+    public void testGeometry() {
+        assertEquals(new Point(0, 0), graph.getOrigin());
+        assertEquals(new Dimension(200, 200), graph.getSize());
+        assertEquals(50, graph.getShortestRadius());
+
+        Node far = new Node(new Point(-50, 400));
+        graph.addNode(far);
+        assertEquals(new Point(-50, 0), graph.getOrigin());
+        assertEquals(new Dimension(250, 400), graph.getSize());
+
+        Node near = new Node(new Point(200, 230));
+        graph.addNode(near);
+        assertEquals(15, graph.getShortestRadius());
+
+        graph.moveNode(near, new Point(200, 210));
+        assertEquals(5, graph.getShortestRadius());
+        graph.moveNode(near, new Point(300, 300));
+        assertEquals(50, graph.getShortestRadius());
+
+        graph.removeNode(far);
+        graph.removeNode(near);
+        assertEquals(new Point(0, 0), graph.getOrigin());
+        assertEquals(new Dimension(200, 200), graph.getSize());
+
+        assertEquals(new Dimension(), new Graph().getSize());
+        assertEquals(Integer.MAX_VALUE / 2, new Graph().getShortestRadius());
+    }
+
+    @Test
+    public void testShortestRadius() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 50; trial++) {
+            Graph g = new Graph();
+            List<Node> added = new ArrayList<>();
+            int n = 2 + random.nextInt(60);
+            for (int i = 0; i < n; i++) {
+                Node node = new Node(new Point(random.nextInt(1000),
+                        random.nextInt(1000)));
+                g.addNode(node);
+                added.add(node);
+            }
+            double best = Double.MAX_VALUE;
+            for (Node a : added) {
+                for (Node b : added) {
+                    if (a != b) {
+                        best = Math.min(best, a.distance(b));
+                    }
+                }
+            }
+            assertEquals((int) (best / 2), g.getShortestRadius());
+        }
+    }
+
+    private int[] paint(Rectangle view) {
+        BufferedImage image = new BufferedImage(100, 100,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.translate(-40, -60);
+        if (view == null) {
+            graph.paintNodes(g2d);
+            graph.paintEdges(g2d);
+        } else {
+            graph.paintNodes(g2d, view);
+            graph.paintEdges(g2d, view);
+        }
+        g2d.dispose();
+        return image.getRGB(0, 0, 100, 100, null, 0, 100);
+    }
+
+    @Test
+    public void testPaintView() {
+        // A long edge whose ends are both outside the view.
+        Node a = new Node(new Point(-1000, 120));
+        Node b = new Node(new Point(1000, 130));
+        graph.addNode(a);
+        graph.addNode(b);
+        graph.addEdge(a, b);
+        assertArrayEquals(paint(null), paint(new Rectangle(40, 60, 100, 100)));
+        // The whole graph in view, drawn as one merged path.
+        assertArrayEquals(paint(new Rectangle(40, 60, 100, 100)),
+                paint(new Rectangle(-2000, -2000, 4000, 4000)));
+    }
+
+    @Test
+    public void testEdgeMesh() {
+        assertEquals(12, graph.getEdgeMesh().getEdgeCount());
+
+        // One way edges are kept, and the mesh follows changes.
+        Node corner = graph.nodeAt(new Point(0, 0), 1);
+        Node centre = graph.nodeAt(new Point(100, 100), 1);
+        corner.addAdjacentNode(centre);
+        Node extra = new Node(new Point(5000, 5000));
+        graph.addNode(extra);
+        assertEquals(13, graph.getEdgeMesh().getEdgeCount());
+        graph.addEdge(extra, centre);
+        assertEquals(14, graph.getEdgeMesh().getEdgeCount());
+        graph.removeNode(centre);
+        assertEquals(8, graph.getEdgeMesh().getEdgeCount());
+    }
+
     @Test
     public void testPaintNodes() {
         Graphics2D g2d = mock(Graphics2D.class);
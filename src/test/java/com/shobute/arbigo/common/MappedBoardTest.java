@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import com.shobute.arbigo.engine.RulesEngine;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class MappedBoardTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(Graph graph) throws IOException {
+        Path file = folder.newFile("board" + BoardFile.EXTENSION).toPath();
+        BoardFile.write(graph, file);
+        return file;
+    }
+
+    @Test
+    public void testView() throws IOException {
+        Graph graph = new Graph(4);
+        FrozenGraph expected = graph.freeze();
+        MappedBoard board = MappedBoard.open(write(graph));
+        board.verify();
+
+        assertEquals(16, board.size());
+        assertEquals(expected.getEdgeCount(), board.getEdgeCount());
+        assertEquals(graph.getColour(), board.getColour());
+        assertEquals(new Rectangle(0, 0, 300, 300), board.getBounds());
+        assertEquals(graph.getShortestRadius(), board.getShortestRadius());
+        for (int id = 0; id < board.size(); id++) {
+            assertEquals(expected.getX(id), board.getX(id));
+            assertEquals(expected.getY(id), board.getY(id));
+            assertEquals(expected.getDegree(id), board.getDegree(id));
+            for (int k = 0; k < board.getDegree(id); k++) {
+                assertEquals(expected.getNeighbours()[expected.getOffsets()[id] + k],
+                        board.getNeighbour(id, k));
+            }
+        }
+
+        Graph copy = board.toGraph();
+        assertEquals(16, copy.getNodes().size());
+        assertEquals(expected.getEdgeCount(), copy.freeze().getEdgeCount());
+    }
+
+    @Test
+    public void testFreeze() throws IOException {
+        Graph graph = new Graph(3);
+        MappedBoard board = MappedBoard.open(write(graph));
+        FrozenGraph frozen = board.freeze();
+        assertArrayEquals(graph.freeze().getOffsets(), frozen.getOffsets());
+        assertArrayEquals(graph.freeze().getNeighbours(), frozen.getNeighbours());
+        assertArrayEquals(graph.freeze().getContentHash(),
+                frozen.getContentHash());
+
+        Node centre = frozen.getNode(4);
+        assertEquals(new Point(100, 100), new Point(centre));
+        assertSame(centre, frozen.getNode(4));
+        assertEquals(4, frozen.getId(centre));
+        assertEquals(-1, frozen.getId(new Node(new Point(100, 100))));
+
+        RulesEngine engine = new RulesEngine(frozen);
+        assertTrue(engine.play(4, 1));
+        assertEquals(1, engine.getState().getColour(4));
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        Path file = write(new Graph(3));
+        byte[] valid = Files.readAllBytes(file);
+
+        byte[] corrupt = valid.clone();
+        corrupt[BoardFile.HEADER_BYTES + 2] ^= 1;
+        Files.write(file, corrupt);
+        MappedBoard board = MappedBoard.open(file);
+        try {
+            board.verify();
+            fail("Verified a corrupt board");
+        } catch (IOException ex) {
+        }
+
+        Files.write(file, Arrays.copyOf(valid, valid.length - 4));
+        try {
+            MappedBoard.open(file);
+            fail("Mapped a truncated board");
+        } catch (IOException ex) {
+        }
+
+        Files.write(file, new byte[2]);
+        try {
+            MappedBoard.open(file);
+            fail("Mapped an empty file");
+        } catch (IOException ex) {
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class RenderStatsTest {
+
+    private RenderStats stats;
+
+    @Before
+    public void setUp() {
+        stats = new RenderStats("test", "edges", "nodes");
+    }
+
+    private static long sum(long[] histogram) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Test
+    public void testFrames() {
+        for (int i = 0; i < 3; i++) {
+            stats.beginFrame();
+            stats.mark("edges");
+            stats.mark("unknown");
+            stats.mark("nodes");
+            stats.endFrame();
+        }
+        assertEquals(3, stats.getPaintCount());
+        assertEquals(3, stats.getFramesPerSecond(), 0);
+        assertEquals(3, sum(stats.getFrameHistogram()));
+        Map<String, long[]> histograms = stats.getPhaseHistograms();
+        assertArrayEquals(new Object[]{"edges", "nodes"},
+                histograms.keySet().toArray());
+        assertEquals(3, sum(histograms.get("edges")));
+        assertEquals(3, sum(histograms.get("nodes")));
+        assertTrue(stats.getPhaseNanos().get("nodes") >= 0);
+        assertTrue(stats.getLastFrameMillis() >= 0);
+
+        BufferedImage image = new BufferedImage(200, 100,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        stats.paint(g2d);
+        g2d.dispose();
+        assertNotEquals(0, image.getRGB(10, 10));
+        assertEquals(0, image.getRGB(190, 90));
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        stats.register();
+        ObjectName name = stats.getObjectName();
+        assertNotNull(name);
+        stats.beginFrame();
+        stats.endFrame();
+        assertEquals(1L, server.getAttribute(name, "PaintCount"));
+        assertNotNull(server.getAttribute(name, "PhaseHistograms"));
+
+        stats.unregister();
+        assertFalse(server.isRegistered(name));
+        assertNull(stats.getObjectName());
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.image.BufferedImage;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class StoneSpritesTest {
+
+    @Test
+    public void testCache() {
+        Stone black = new Stone("black");
+        BufferedImage sprite = StoneSprites.get(black, 20, 220, 0.5);
+        assertEquals(StoneSprites.size(20, 0.5), sprite.getWidth());
+        assertSame(sprite, StoneSprites.get(new Stone("black"), 20, 220, 0.5));
+        assertNotSame(sprite, StoneSprites.get(black, 20, 50, 0.5));
+        assertNotSame(sprite, StoneSprites.get(black, 20, 220, 0.25));
+        assertNotSame(sprite, StoneSprites.get(new Stone("white"), 20, 220,
+                0.5));
+
+        // The centre is solid and the corners are clear.
+        int middle = sprite.getWidth() / 2;
+        assertEquals(220, sprite.getRGB(middle, middle) >>> 24);
+        assertEquals(0, sprite.getRGB(0, 0) >>> 24);
+
+        StoneSprites.clear();
+        assertNotSame(sprite, StoneSprites.get(black, 20, 220, 0.5));
+
+        assertNull(StoneSprites.get(black, StoneSprites.MAX_SIZE, 220, 1));
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.common;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class ViewportTest {
+
+    private Viewport viewport;
+
+    @Before
+    public void setUp() {
+        viewport = new Viewport();
+    }
+
+    @Test
+    public void testFit() {
+        viewport.fit(new Rectangle(100, 100, 200, 100), 50, 600, 600);
+        assertEquals(2, viewport.getScale(), 1e-9);
+        assertEquals(new Point(50, 50), viewport.toGraph(new Point(0, 0)));
+        assertEquals(new Point(350, 350), viewport.toGraph(new Point(600, 600)));
+
+        // An empty or single point area is shown unscaled.
+        viewport.fit(new Rectangle(5, 5, 0, 0), 0, 600, 600);
+        assertEquals(1, viewport.getScale(), 1e-9);
+    }
+
+    @Test
+    public void testZoom() {
+        Point anchor = new Point(30, 40);
+        Point before = viewport.toGraph(anchor);
+        viewport.zoom(4, anchor);
+        assertEquals(4, viewport.getScale(), 1e-9);
+        assertEquals(before, viewport.toGraph(anchor));
+
+        viewport.zoom(1e-12, anchor);
+        assertTrue(viewport.getScale() > 0);
+    }
+
+    @Test
+    public void testPan() {
+        viewport.zoom(2, new Point());
+        viewport.pan(10, -20);
+        assertEquals(new Point(-5, 10), viewport.toGraph(new Point()));
+        Rectangle area = new Rectangle(-5, 10, 50, 50);
+        assertEquals(new Rectangle(0, 0, 100, 100), viewport.toScreen(area));
+        assertEquals(area, viewport.toGraph(viewport.toScreen(area)));
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.Graph;
+import java.awt.Point;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class MonteCarloTest {
+
+    private static final int BLACK = 0;
+    private static final int WHITE = 1;
+
+    private Graph graph;
+    private RulesEngine engine;
+
+    @Before
+    public void setUp() {
+        graph = new Graph(5);
+        engine = new RulesEngine(graph);
+    }
+
+    private int id(int x, int y) {
+        return engine.getState().getId(
+                graph.nodeAt(new Point(x * 100, y * 100), 1));
+    }
+
+    @Test
+    public void testCapture() {
+        // White's twelve stones and a black stone on the bottom edge share
+        // their last liberty, so whoever plays there first captures.
+        for (int y = 0; y < 4; y++) {
+            assertTrue(engine.play(id(3, y), BLACK));
+        }
+        assertTrue(engine.play(id(0, 4), BLACK));
+        assertTrue(engine.play(id(2, 4), BLACK));
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 4; y++) {
+                assertTrue(engine.play(id(x, y), WHITE));
+            }
+        }
+        int moves = engine.getMoveCount();
+
+        MonteCarlo search = new MonteCarlo(engine,
+                new int[]{BLACK, WHITE}, 0, new Random(1));
+        MonteCarlo.Result result = search.search(500);
+        assertEquals(id(1, 4), result.getMove());
+        assertTrue(result.getWinRate() > 0.5);
+        assertTrue(result.getPlayouts() > 0);
+        assertTrue(result.getPlayoutsPerSecond() > 0);
+
+        // The game searched from is left alone.
+        assertEquals(moves, engine.getMoveCount());
+        assertEquals(18, engine.getState().getStoneCount());
+    }
+
+    @Test
+    public void testLegalMove() {
+        assertTrue(engine.play(id(2, 2), BLACK));
+        MonteCarlo.Result result = new MonteCarlo(engine,
+                new int[]{WHITE, 2, BLACK}, 0, new Random(2)).search(100);
+        assertTrue(engine.getLegalMoves().contains(result.getMove(), WHITE));
+    }
+
+    @Test
+    public void testNoMove() {
+        // A lone stone would capture itself and repeat the empty board.
+        RulesEngine single = new RulesEngine(new Graph(1));
+        MonteCarlo.Result result = new MonteCarlo(single,
+                new int[]{WHITE, BLACK}, 0).search(100);
+        assertEquals(MonteCarlo.PASS, result.getMove());
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.Graph;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class PositionTest {
+
+    private Position position;
+
+    @Before
+    public void setUp() {
+        position = new Position(100);
+    }
+
+    @Test
+    public void testSet() {
+        assertTrue(position.isEmpty(70));
+        position.set(70, 2);
+        assertFalse(position.isEmpty(70));
+        assertTrue(position.hasColour(70, 2));
+        assertEquals(2, position.getColour(70));
+
+        position.set(70, 0);
+        assertFalse(position.hasColour(70, 2));
+        assertEquals(0, position.getColour(70));
+        assertEquals(1, position.count());
+
+        position.set(70, GameState.EMPTY);
+        assertEquals(GameState.EMPTY, position.getColour(70));
+        assertEquals(0, position.count());
+    }
+
+    @Test
+    public void testEquality() {
+        Position other = new Position(100);
+        position.set(5, 1);
+        assertNotEquals(position, other);
+
+        position.set(5, GameState.EMPTY);
+        // Unused colour bitsets do not affect equality.
+        assertEquals(position, other);
+        assertEquals(position.hashCode(), other.hashCode());
+
+        position.set(99, 3);
+        Position copy = new Position(position);
+        assertEquals(position, copy);
+        copy.set(0, 3);
+        assertNotEquals(position, copy);
+        assertEquals(1, position.count(3));
+    }
+
+    @Test
+    public void testLibertiesAndRemove() {
+        Graph graph = new Graph(3);
+        RulesEngine engine = new RulesEngine(graph);
+        engine.play(0, 0);
+        engine.play(1, 0);
+        engine.play(2, 1);
+
+        Position stones = engine.getState().getPosition();
+        long[] chain = new Position(stones).getStones(0);
+        long[] liberties = new long[Position.words(9)];
+        stones.liberties(engine.getState().getGraph(), chain, liberties);
+        // Nodes 0 and 1 are on the top row, next to nodes 3 and 4.
+        assertEquals((1L << 3) | (1L << 4), liberties[0]);
+
+        Position copy = new Position(stones);
+        copy.removeAll(chain);
+        assertEquals(1, copy.count());
+        assertTrue(copy.hasColour(2, 1));
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.engine;
+
+import com.shobute.arbigo.common.Graph;
+import java.awt.Point;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class RulesEngineTest {
+
+    private static final int BLACK = 0;
+    private static final int WHITE = 1;
+
+    private Graph graph;
+    private RulesEngine engine;
+
+    @Before
+    public void setUp() {
+        graph = new Graph(4);
+        engine = new RulesEngine(graph);
+    }
+
+    private int id(int x, int y) {
+        return engine.getState().getId(
+                graph.nodeAt(new Point(x * 100, y * 100), 1));
+    }
+
+    @Test
+    public void testCapture() {
+        assertTrue(engine.play(id(0, 0), WHITE));
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(0, 1), BLACK));
+
+        GameState state = engine.getState();
+        assertTrue(state.isEmpty(id(0, 0)));
+        assertEquals(2, state.getStoneCount());
+        assertArrayEquals(new int[]{id(0, 0)},
+                engine.getLastMove().getCaptured());
+    }
+
+    @Test
+    public void testOccupied() {
+        assertTrue(engine.play(id(1, 1), BLACK));
+        assertFalse(engine.isLegal(id(1, 1), WHITE));
+        assertFalse(engine.play(id(1, 1), WHITE));
+        assertFalse(engine.isLegal(-1, WHITE));
+    }
+
+    @Test
+    public void testSingleStoneSuicide() {
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(0, 1), BLACK));
+        assertFalse(engine.isLegal(id(0, 0), WHITE));
+        assertFalse(engine.play(id(0, 0), WHITE));
+        assertEquals(2, engine.getMoveCount());
+    }
+
+    @Test
+    public void testMultipleStoneSuicide() {
+        assertTrue(engine.play(id(0, 0), BLACK));
+        assertTrue(engine.play(id(1, 0), WHITE));
+        assertTrue(engine.play(id(1, 1), WHITE));
+        assertTrue(engine.play(id(0, 2), WHITE));
+        assertTrue(engine.play(id(0, 1), BLACK));
+
+        assertEquals(2, engine.getLastMove().getCaptured().length);
+        assertTrue(engine.getState().isEmpty(id(0, 0)));
+        assertTrue(engine.getState().isEmpty(id(0, 1)));
+    }
+
+    @Test
+    public void testKo() {
+        assertTrue(engine.play(id(1, 1), WHITE));
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(0, 1), BLACK));
+        assertTrue(engine.play(id(1, 2), BLACK));
+        assertTrue(engine.play(id(2, 0), WHITE));
+        assertTrue(engine.play(id(2, 2), WHITE));
+        assertTrue(engine.play(id(3, 1), WHITE));
+
+        assertTrue(engine.play(id(2, 1), BLACK));
+        assertTrue(engine.getState().isEmpty(id(1, 1)));
+
+        // Retaking straight away would repeat the previous position.
+        assertFalse(engine.isLegal(id(1, 1), WHITE));
+        assertTrue(engine.isLegal(id(3, 3), WHITE));
+    }
+
+    @Test
+    public void testUndo() {
+        assertFalse(engine.undo());
+        assertTrue(engine.play(id(0, 0), WHITE));
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(0, 1), BLACK));
+
+        assertTrue(engine.undo());
+        GameState state = engine.getState();
+        assertEquals(WHITE, state.getColour(id(0, 0)));
+        assertTrue(state.isEmpty(id(0, 1)));
+        assertEquals(2, engine.getMoveCount());
+
+        // The position can be reached again once it has been undone.
+        assertTrue(engine.play(id(0, 1), BLACK));
+    }
+
+    @Test
+    public void testHash() {
+        GameState state = engine.getState();
+        assertEquals(0, state.getHash());
+
+        assertTrue(engine.play(id(0, 0), BLACK));
+        assertTrue(engine.play(id(3, 3), WHITE));
+        long hash = state.getHash();
+        assertNotEquals(0, hash);
+
+        assertTrue(engine.undo());
+        assertTrue(engine.undo());
+        assertEquals(0, state.getHash());
+
+        // The same position reached in a different order.
+        assertTrue(engine.play(id(3, 3), WHITE));
+        assertTrue(engine.play(id(0, 0), BLACK));
+        assertEquals(hash, state.getHash());
+    }
+
+    @Test
+    public void testChains() {
+        assertTrue(engine.play(id(0, 0), BLACK));
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(1, 1), WHITE));
+
+        GameState state = engine.getState();
+        assertEquals(state.getChain(id(0, 0)), state.getChain(id(1, 0)));
+        assertEquals(2, state.getChainSize(id(0, 0)));
+        assertEquals(-1, state.getChain(id(3, 3)));
+        assertTrue(state.getLiberties(id(0, 0)) > 0);
+
+        assertTrue(engine.play(id(0, 1), WHITE));
+        assertTrue(engine.play(id(2, 0), WHITE));
+        assertTrue(state.isEmpty(id(0, 0)));
+        assertTrue(state.isEmpty(id(1, 0)));
+    }
+
+    @Test
+    public void testRandomGame() {
+        Random random = new Random(1);
+        GameState state = engine.getState();
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextInt(5) == 0) {
+                engine.undo();
+            } else if (random.nextInt(5) == 0) {
+                engine.redo();
+            } else {
+                engine.play(random.nextInt(state.size()), random.nextInt(3));
+            }
+            assertChainsValid(state);
+        }
+    }
+
+    private void assertChainsValid(GameState state) {
+        for (int id = 0; id < state.size(); id++) {
+            if (state.isEmpty(id)) {
+                continue;
+            }
+
+            Set<Integer> group = new HashSet<>();
+            int liberties = 0;
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(id);
+            group.add(id);
+            int[] offsets = state.getGraph().getOffsets();
+            int[] neighbours = state.getGraph().getNeighbours();
+            while (!stack.isEmpty()) {
+                int top = stack.pop();
+                for (int i = offsets[top]; i < offsets[top + 1]; i++) {
+                    int adj = neighbours[i];
+                    if (state.isEmpty(adj)) {
+                        liberties++;
+                    } else if (state.getColour(adj) == state.getColour(id)
+                            && group.add(adj)) {
+                        stack.push(adj);
+                    }
+                }
+            }
+
+            assertTrue(liberties > 0);
+            assertEquals(liberties, state.getLiberties(id));
+            assertEquals(group.size(), state.getChainSize(id));
+            Set<Integer> members = new HashSet<>();
+            int member = id;
+            do {
+                assertEquals(state.getChain(id), state.getChain(member));
+                members.add(member);
+                member = state.getNextInChain(member);
+            } while (member != id);
+            assertEquals(group, members);
+        }
+    }
+
+    @Test
+    public void testLegalMoves() {
+        LegalMoves legal = engine.getLegalMoves();
+        assertEquals(16, legal.count(BLACK));
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(0, 1), BLACK));
+        assertFalse(legal.contains(id(0, 0), WHITE));
+        assertTrue(legal.contains(id(0, 0), BLACK));
+        assertFalse(legal.contains(id(1, 0), BLACK));
+        assertEquals(13, legal.count(WHITE));
+        assertEquals(id(2, 0), legal.next(0, WHITE));
+        assertEquals(-1, legal.next(id(3, 3) + 1, WHITE));
+    }
+
+    @Test
+    public void testRandomLegalMoves() {
+        for (int size = 2; size <= 5; size++) {
+            engine = new RulesEngine(new Graph(size));
+            LegalMoves legal = engine.getLegalMoves();
+            GameState state = engine.getState();
+            Random random = new Random(size);
+            for (int i = 0; i < 500; i++) {
+                int colour = random.nextInt(3);
+                int count = 0;
+                for (int id = 0; id < state.size(); id++) {
+                    boolean expected = engine.isLegal(id, colour);
+                    assertEquals(expected, legal.contains(id, colour));
+                    count += expected ? 1 : 0;
+                }
+                assertEquals(count, legal.count(colour));
+
+                if (random.nextInt(6) == 0) {
+                    engine.undo();
+                } else if (random.nextInt(6) == 0) {
+                    engine.redo();
+                } else if (count > 0) {
+                    int id = legal.next(random.nextInt(state.size()), colour);
+                    assertTrue(engine.play(id < 0 ? legal.next(0, colour) : id,
+                            colour));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRedo() {
+        assertFalse(engine.redo());
+        assertTrue(engine.play(id(0, 0), WHITE));
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(0, 1), BLACK));
+        long hash = engine.getState().getHash();
+
+        assertTrue(engine.jumpTo(0));
+        assertEquals(0, engine.getState().getStoneCount());
+        assertEquals(3, engine.getRedoCount());
+
+        assertTrue(engine.jumpTo(3));
+        assertEquals(hash, engine.getState().getHash());
+        assertTrue(engine.getState().isEmpty(id(0, 0)));
+        assertEquals(2, engine.getState().getChainSize(id(1, 0)) +
+                engine.getState().getChainSize(id(0, 1)));
+        assertFalse(engine.jumpTo(4));
+
+        // Playing a new move discards the moves that were undone.
+        assertTrue(engine.undo());
+        assertTrue(engine.play(id(3, 3), WHITE));
+        assertEquals(0, engine.getRedoCount());
+        assertFalse(engine.redo());
+        assertEquals(id(1, 0), engine.getMove(1).getNode());
+    }
+
+    @Test
+    public void testScore() {
+        assertTrue(engine.play(id(1, 0), BLACK));
+        assertTrue(engine.play(id(0, 1), BLACK));
+        assertTrue(engine.play(id(3, 3), WHITE));
+
+        int[] scores = new Score(engine.getState()).compute();
+        // Black's corner point is territory; the rest of the board touches
+        // both colours.
+        assertEquals(3, scores[BLACK]);
+        assertEquals(1, scores[WHITE]);
+    }
+
+    @Test
+    public void testLargeChain() {
+        int size = 200;
+        engine = new RulesEngine(new Graph(size));
+        for (int id = 0; id < size * size; id++) {
+            // Every row but the last, leaving the chain one row of liberties.
+            if (id < size * (size - 1)) {
+                assertTrue(engine.play(id, BLACK));
+            }
+        }
+        GameState state = engine.getState();
+        assertEquals(size * (size - 1), state.getChainSize(0));
+        assertEquals(size, state.getLiberties(0));
+
+        // Undo has to rebuild the whole chain without recursing.
+        assertTrue(engine.undo());
+        assertEquals(size * (size - 1) - 1, state.getChainSize(0));
+
+        FloodFill fill = new FloodFill(state.getGraph());
+        fill.clear();
+        assertEquals(size + 1, fill.fill(state.getPosition(), size * size - 1));
+        assertEquals(1 << BLACK, fill.getBorderColours());
+        assertEquals(0, fill.fill(state.getPosition(), size * size - 1));
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.play;
+
+import com.shobute.arbigo.common.Colour;
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.RenderStats;
+import com.shobute.arbigo.common.Stone;
+import com.shobute.arbigo.common.Viewport;
+import com.shobute.arbigo.engine.RulesEngine;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class BoardRendererTest {
+
+    private static final int SIZE = 240;
+
+    private Graph graph;
+    private RulesEngine engine;
+    private Stone[] stones;
+    private Viewport viewport;
+
+    @Before
+    public void setUp() {
+        graph = new Graph(5);
+        engine = new RulesEngine(graph);
+        stones = new Stone[Colour.colours.length];
+        for (int i = 0; i < stones.length; i++) {
+            stones[i] = new Stone(Colour.colours[i]);
+        }
+        // Zoomed in so that part of the board is off screen.
+        viewport = new Viewport();
+        viewport.fit(graph.getBounds(), graph.getShortestRadius(), SIZE, SIZE);
+        viewport.zoom(1.7, new Point(SIZE / 3, SIZE / 3));
+    }
+
+    private int[] render(BoardRenderer renderer) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        renderer.paint(g2d, SIZE, SIZE, viewport);
+        g2d.dispose();
+        return image.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+
+    @Test
+    public void testIncrementalMatchesFull() {
+        BoardRenderer incremental = new BoardRenderer(graph,
+                engine.getState(), stones, new RenderStats("test"));
+        int[] empty = render(incremental);
+        Random random = new Random(7);
+        int played = 0;
+        for (int turn = 0; turn < 200; turn++) {
+            if (played > 0 && random.nextInt(5) == 0) {
+                engine.undo();
+                played--;
+            } else {
+                int colour = turn % 2;
+                int id = engine.getLegalMoves().next(
+                        random.nextInt(engine.getState().size()), colour);
+                if (id < 0 || !engine.play(id, colour)) {
+                    continue;
+                }
+                played++;
+            }
+            BoardRenderer full = new BoardRenderer(graph, engine.getState(),
+                    stones, new RenderStats("test"));
+            assertArrayEquals(render(full), render(incremental));
+        }
+        while (played-- > 0) {
+            engine.undo();
+        }
+        assertArrayEquals(empty, render(incremental));
+    }
+
+}
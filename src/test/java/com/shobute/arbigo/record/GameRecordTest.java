@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.record;
+
+import com.shobute.arbigo.common.FrozenGraph;
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.engine.RulesEngine;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class GameRecordTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FrozenGraph graph;
+    private Path file;
+
+    @Before
+    public void setUp() {
+        graph = new Graph(5).freeze();
+        file = folder.getRoot().toPath().resolve("games/game"
+                + GameRecord.EXTENSION);
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        RulesEngine engine = new RulesEngine(graph);
+        Random random = new Random(7);
+        try (GameRecordWriter writer = new GameRecordWriter(file, graph, 2,
+                30)) {
+            for (int i = 0; i < 40; i++) {
+                int node = random.nextInt(graph.size());
+                if (engine.play(node, i % 2)) {
+                    writer.move(node, i % 2, 30 - i);
+                }
+                if (i % 7 == 0 && engine.undo()) {
+                    writer.takeback();
+                }
+            }
+            writer.flush();
+            writer.timeout(1);
+            writer.resign(0, 12);
+        }
+
+        RulesEngine replayed = new RulesEngine(graph);
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            assertArrayEquals(graph.getContentHash(), reader.getBoardHash());
+            assertEquals(2, reader.getPlayers());
+            assertEquals(30, reader.getTimeInterval());
+            assertTrue(reader.replay(replayed) > 2);
+            assertNull(reader.next());
+        }
+        assertEquals(engine.getMoveCount(), replayed.getMoveCount());
+        assertEquals(engine.getState().getHash(), replayed.getState().getHash());
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        try (GameRecordWriter writer = new GameRecordWriter(file, graph, 3,
+                10)) {
+            writer.move(12, 0, 9);
+        }
+        // Reopening appends, after dropping a half written event.
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[5]));
+        }
+        // Closing without waiting still writes everything queued.
+        GameRecordWriter later = new GameRecordWriter(file, graph, 3, 10);
+        later.takeback();
+        later.resign(2, 4);
+        later.timeout(1);
+        later.closeLater().get();
+        later.timeout(0);
+        later.closeLater().get();
+        new GameRecordWriter(file, graph, 3, 10).close();
+
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            assertEvent(reader.next(), GameEvent.Type.MOVE, 12, 0, 9);
+            assertEvent(reader.next(), GameEvent.Type.TAKEBACK, -1, -1, -1);
+            assertEvent(reader.next(), GameEvent.Type.RESIGN, -1, 2, 4);
+            assertEvent(reader.next(), GameEvent.Type.TIMEOUT, -1, 1, 0);
+            assertNull(reader.next());
+        }
+    }
+
+    private static void assertEvent(GameEvent event, GameEvent.Type type,
+            int node, int colour, int clock) {
+        assertEquals(type, event.getType());
+        assertEquals(node, event.getNode());
+        assertEquals(colour, event.getColour());
+        assertEquals(clock, event.getClock());
+    }
+
+    @Test
+    public void testOtherBoard() throws IOException {
+        new GameRecordWriter(file, graph, 2, 10).close();
+
+        GameRecordWriter writer = new GameRecordWriter(file,
+                new Graph(4).freeze(), 2, 10);
+        writer.move(0, 0, 10);
+        try {
+            writer.close();
+            fail("Appended to a record of another board");
+        } catch (IOException ex) {
+        }
+
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            reader.replay(new RulesEngine(new Graph(4)));
+            fail("Replayed a record on another board");
+        } catch (IOException ex) {
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw;
+
+import com.shobute.arbigo.common.BoardFile;
+import com.shobute.arbigo.common.BoardFormats;
+import com.shobute.arbigo.common.Graph;
+import java.awt.Point;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class AutosaveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        System.setProperty("arbigo.autosave",
+                folder.getRoot().toPath().resolve("autosave").toString());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("arbigo.autosave");
+    }
+
+    @Test
+    public void testSave() throws Exception {
+        Canvas canvas = new Canvas();
+        canvas.setGraph(new Graph(4));
+        Autosave autosave = new Autosave(canvas);
+        autosave.start();
+        assertNull(Autosave.findLeftover());
+
+        autosave.save().get();
+        Path file = autosave.getFile();
+        // The autosave of an open editor is not a leftover.
+        assertNull(Autosave.findLeftover());
+        assertEquals(16, BoardFile.read(file).getNodes().size());
+
+        // Nothing is written until the drawing changes.
+        assertNull(autosave.save());
+        FileTime old = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, old);
+        canvas.getSelectedNodes().add(canvas.getGraph().nodeAt(
+                new Point(0, 0), 1));
+        canvas.delete();
+        canvas.undo();
+        autosave.save().get();
+        assertEquals(old, Files.getLastModifiedTime(file));
+
+        canvas.redo();
+        autosave.save().get();
+        assertEquals(15, BoardFile.read(file).getNodes().size());
+        assertEquals(2, folder.getRoot().toPath().resolve("autosave")
+                .toFile().list().length);
+
+        autosave.discard().get();
+        assertFalse(autosave.isRunning());
+        assertNull(Autosave.findLeftover());
+        assertEquals(0, folder.getRoot().toPath().resolve("autosave")
+                .toFile().list().length);
+    }
+
+    @Test
+    public void testLeftover() throws Exception {
+        Canvas canvas = new Canvas();
+        canvas.setGraph(new Graph(3));
+        Path leftover = Autosave.getDirectory().resolve(
+                "drawing-20000101-000000-000" + BoardFile.EXTENSION);
+        new Autosave(canvas).saveTo(leftover).get();
+        assertEquals(leftover, Autosave.findLeftover());
+
+        Autosave autosave = new Autosave(canvas);
+        autosave.resume(leftover);
+        autosave.save().get();
+        assertEquals(leftover, autosave.getFile());
+        assertNull(Autosave.findLeftover());
+
+        autosave.discard().get();
+        assertFalse(Files.exists(leftover));
+    }
+
+    @Test
+    public void testSaveTo() throws Exception {
+        Canvas canvas = new Canvas();
+        canvas.setGraph(new Graph(3));
+        Path target = folder.getRoot().toPath().resolve("board" + BoardFile.EXTENSION);
+        new Autosave(canvas).saveTo(target).get();
+        assertEquals(9, BoardFile.read(target).getNodes().size());
+
+        for (String name : new String[]{"board.graphml", "board.edges"}) {
+            target = folder.getRoot().toPath().resolve(name);
+            new Autosave(canvas).saveTo(target).get();
+            assertEquals(9, BoardFormats.read(target).getNodes().size());
+        }
+    }
+
+}
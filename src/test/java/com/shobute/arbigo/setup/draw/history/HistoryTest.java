@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.setup.draw.history;
+
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.Node;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class HistoryTest {
+
+    // Node equality is by identity, so boards are compared by their points.
+    private static String describe(Graph graph) {
+        TreeSet<String> nodes = new TreeSet<>();
+        for (Node node : graph.getNodes()) {
+            TreeSet<String> adjacent = new TreeSet<>();
+            for (Node other : node.getAdjacentNodes()) {
+                adjacent.add(other.x + "," + other.y);
+            }
+            nodes.add(node.x + "," + node.y + adjacent);
+        }
+        return nodes.toString();
+    }
+
+    private static Node nodeAt(Graph graph, int x, int y) {
+        return graph.nodeAt(new Point(x, y), 1);
+    }
+
+    @Test
+    public void testUndoRedo() {
+        Graph graph = new Graph(3);
+        History history = new History(graph);
+        List<String> states = new ArrayList<>();
+        states.add(describe(graph));
+
+        List<Command> commands = new ArrayList<>();
+        Node a = new Node(new Point(300, 0));
+        Node b = new Node(new Point(300, 100));
+        commands.add(new AddNodes(Arrays.asList(a, b)));
+        commands.add(new AddEdge(a, b));
+        commands.add(new AddEdge(a, nodeAt(graph, 200, 0)));
+        for (Command command : commands) {
+            command.apply(graph);
+            history.record(command, graph);
+            states.add(describe(graph));
+        }
+
+        Node centre = nodeAt(graph, 100, 100);
+        Point[] from = {centre.getLocation()};
+        graph.moveNode(centre, new Point(150, 150));
+        history.record(new MoveNodes(new Node[]{centre}, from), graph);
+        states.add(describe(graph));
+
+        Command remove = new RemoveNodes(Arrays.asList(
+                nodeAt(graph, 200, 0), centre));
+        remove.apply(graph);
+        history.record(remove, graph);
+        states.add(describe(graph));
+        assertEquals(9, graph.getNodes().size());
+        assertFalse(a.getAdjacentNodes().contains(nodeAt(graph, 200, 0)));
+
+        for (int i = states.size() - 2; i >= 0; i--) {
+            assertTrue(history.canUndo());
+            graph = history.undo(graph);
+            assertEquals(states.get(i), describe(graph));
+        }
+        assertFalse(history.canUndo());
+        for (int i = 1; i < states.size(); i++) {
+            assertTrue(history.canRedo());
+            graph = history.redo(graph);
+            assertEquals(states.get(i), describe(graph));
+        }
+        assertFalse(history.canRedo());
+
+        // A new edit forgets what could have been redone.
+        graph = history.undo(graph);
+        graph = history.undo(graph);
+        Command add = new AddNodes(Collections.singleton(
+                new Node(new Point(500, 500))));
+        add.apply(graph);
+        history.record(add, graph);
+        assertFalse(history.canRedo());
+        graph = history.undo(graph);
+        assertEquals(states.get(states.size() - 3), describe(graph));
+    }
+
+    @Test
+    public void testSnapshots() {
+        Graph graph = new Graph(3);
+        History history = new History(graph, 1, 3);
+        List<String> states = new ArrayList<>();
+        states.add(describe(graph));
+        Node corner = nodeAt(graph, 0, 0);
+        for (int i = 1; i <= 100; i++) {
+            Point[] from = {corner.getLocation()};
+            graph.moveNode(corner, new Point(-i, -i));
+            history.record(new MoveNodes(new Node[]{corner}, from), graph);
+            states.add(describe(graph));
+        }
+
+        // Nine moves to a snapshot, and three snapshots of 9 nodes and 24
+        // edge ends at most.
+        assertTrue(history.size() <= 2 * 9 + 3 * 33);
+
+        while (history.canUndo()) {
+            graph = history.undo(graph);
+            assertEquals(states.get(history.getPosition()), describe(graph));
+        }
+        assertTrue(history.getPosition() > 0);
+        while (history.canRedo()) {
+            graph = history.redo(graph);
+            assertEquals(states.get(history.getPosition()), describe(graph));
+        }
+        assertEquals(100, history.getPosition());
+
+        // Commands after a restored snapshot still apply to its nodes.
+        corner = nodeAt(graph, -100, -100);
+        assertNotNull(corner);
+        assertEquals(2, corner.getAdjacentNodes().size());
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Ben Lloyd.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.shobute.arbigo.thumbnail;
+
+import com.shobute.arbigo.common.BoardFile;
+import com.shobute.arbigo.common.Graph;
+import com.shobute.arbigo.common.MappedBoard;
+import com.shobute.arbigo.engine.RulesEngine;
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Ben Lloyd
+ */
+public class ThumbnailTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRender() {
+        Graph graph = new Graph(3);
+        RulesEngine engine = new RulesEngine(graph);
+        int centre = engine.getState().getId(
+                graph.nodeAt(new Point(100, 100), 1));
+        assertTrue(engine.play(centre, 1));
+
+        BufferedImage empty = Thumbnail.render(graph, 90);
+        BufferedImage played = Thumbnail.render(graph, engine.getState(), 90);
+        assertEquals(90, played.getWidth());
+        assertEquals(90, played.getHeight());
+        // The board fits with a margin of one stone radius, so the centre
+        // node is in the middle of the image.
+        assertEquals(Color.WHITE.getRGB(), empty.getRGB(2, 2));
+        assertNotEquals(Color.WHITE.getRGB(), empty.getRGB(45, 45));
+        assertNotEquals(empty.getRGB(45, 40), played.getRGB(45, 40));
+
+        assertEquals(Color.WHITE.getRGB(),
+                Thumbnail.render(new Graph(), 10).getRGB(5, 5));
+    }
+
+    @Test
+    public void testRenderMapped() throws IOException {
+        Graph graph = new Graph(5);
+        Path file = folder.newFile("board" + BoardFile.EXTENSION).toPath();
+        BoardFile.write(graph, file);
+
+        BufferedImage expected = Thumbnail.render(graph, 80);
+        BufferedImage actual = Thumbnail.render(MappedBoard.open(file), 80);
+        // Edges are stroked one at a time rather than as a path, so
+        // antialiasing differs where they meet, but the same pixels are
+        // drawn on.
+        int white = Color.WHITE.getRGB();
+        for (int y = 0; y < 80; y++) {
+            for (int x = 0; x < 80; x++) {
+                assertEquals(expected.getRGB(x, y) == white,
+                        actual.getRGB(x, y) == white);
+            }
+        }
+    }
+
+    @Test
+    public void testExport() throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Path file = folder.getRoot().toPath().resolve("board" + i + ".ser");
+            if (i % 2 == 0) {
+                try (ObjectOutputStream out = new ObjectOutputStream(
+                        Files.newOutputStream(file))) {
+                    out.writeObject(new Graph(2 + i));
+                }
+            } else {
+                BoardFile.write(new Graph(2 + i), file);
+            }
+            files.add(file);
+        }
+        Path broken = folder.newFile("broken.ser").toPath();
+        Files.write(broken, new byte[]{1, 2, 3});
+        files.add(broken);
+
+        Path output = folder.getRoot().toPath().resolve("thumbnails");
+        List<Path> failed = new ThumbnailExporter(output, 64, 3).export(files);
+        assertEquals(1, failed.size());
+        assertEquals(broken, failed.get(0));
+        for (int i = 0; i < 10; i++) {
+            BufferedImage image = ImageIO.read(
+                    output.resolve("board" + i + ".png").toFile());
+            assertEquals(64, image.getWidth());
+        }
+        assertFalse(Files.exists(output.resolve("broken.png")));
+    }
+
+}